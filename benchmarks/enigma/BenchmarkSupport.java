@@ -0,0 +1,68 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/** Shared fixtures for the enigma benchmarks.
+ *  @author Michaela Warady
+ */
+final class BenchmarkSupport {
+
+    /** Configuration file used by default, relative to benchmarks/. */
+    static final String DEFAULT_CONFIG = "../testing/correct/default.conf";
+
+    /** Rotors inserted into machines built from DEFAULT_CONFIG. */
+    static final String[] ROTORS = { "B", "BETA", "III", "IV", "I" };
+
+    /** Initial rotor setting for machines built from DEFAULT_CONFIG. */
+    static final String SETTING = "AXLE";
+
+    /** Settings line equivalent to ROTORS and SETTING. */
+    static final String SETTINGS_LINE = "* B BETA III IV I AXLE (HQ) (EX)";
+
+    /** Not instantiable. */
+    private BenchmarkSupport() {
+    }
+
+    /** Return a machine freshly read from the configuration file CONFIG. */
+    static Machine readMachine(String config) {
+        return new Main(new String[] { config }).readConfig();
+    }
+
+    /** Return a machine read from CONFIG with ROTORS inserted and set to
+     *  SETTING. */
+    static Machine setUpMachine(String config) {
+        Machine mach = readMachine(config);
+        mach.insertRotors(ROTORS);
+        mach.setRotors(SETTING);
+        return mach;
+    }
+
+    /** Return LEN pseudo-random upper-case letters, the same for every
+     *  call with the same LEN. */
+    static String randomMessage(int len) {
+        Random rand = new Random(len);
+        char[] msg = new char[len];
+        for (int x = 0; x < len; x += 1) {
+            msg[x] = (char) ('A' + rand.nextInt(26));
+        }
+        return new String(msg);
+    }
+
+    /** Write an input file for Main to a fresh temporary file and return
+     *  its path.  The file holds LINES message lines of LEN letters each,
+     *  preceded by SETTINGS_LINE. */
+    static Path writeInput(int lines, int len) throws IOException {
+        Path file = Files.createTempFile("enigma-bench", ".inp");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println(SETTINGS_LINE);
+            for (int x = 0; x < lines; x += 1) {
+                out.println(randomMessage(len + x));
+            }
+        }
+        return file;
+    }
+}
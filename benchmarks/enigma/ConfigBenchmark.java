@@ -0,0 +1,72 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Cost of reading a configuration file into a Machine, by parsing it and
+ *  from its compiled form.
+ *  @author Michaela Warady
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+
+    /** Configuration file to read. */
+    @Param({ BenchmarkSupport.DEFAULT_CONFIG })
+    public String config;
+
+    /** Source of the configuration file. */
+    private byte[] _source;
+
+    /** Compiled form of the configuration file. */
+    private File _compiled;
+
+    /** Compile the configuration file into a temporary file. */
+    @Setup
+    public void compile() throws IOException {
+        _source = Files.readAllBytes(Paths.get(config));
+        _compiled = File.createTempFile("enigma-bench", CompiledConfig.SUFFIX);
+        CompiledConfig.write(BenchmarkSupport.readMachine(config), _source,
+                             _compiled);
+    }
+
+    /** Remove the compiled file. */
+    @TearDown
+    public void removeCompiled() {
+        _compiled.delete();
+    }
+
+    /** Parse the configuration file into a Machine. */
+    @Benchmark
+    public Machine readConfig() {
+        return BenchmarkSupport.readMachine(config);
+    }
+
+    /** Checksum the configuration file and build a Machine from its
+     *  compiled form, as Main does when the compiled form is current. */
+    @Benchmark
+    public Machine readCompiled() throws IOException {
+        byte[] source = Files.readAllBytes(Paths.get(config));
+        return CompiledConfig.read(_compiled, source);
+    }
+}
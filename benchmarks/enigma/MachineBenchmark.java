@@ -0,0 +1,109 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of Machine.convert on single characters and messages,
+ *  and of snapshot and restore.
+ *  @author Michaela Warady
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBenchmark {
+
+    /** Configuration file to read. */
+    @Param({ BenchmarkSupport.DEFAULT_CONFIG })
+    public String config;
+
+    /** Length of the message converted by convertString. */
+    @Param({ "16", "1024", "65536" })
+    public int length;
+
+    /** Whether the machine counts what it does in MachineMetrics. */
+    @Param({ "false", "true" })
+    public boolean metrics;
+
+    /** Machine under test. */
+    private Machine _machine;
+
+    /** Message converted by convertString. */
+    private String _message;
+
+    /** Output buffer for convertBuffer. */
+    private char[] _buffer;
+
+    /** Next input character index for convertChar. */
+    private int _next;
+
+    /** Build the machine and message. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _machine = BenchmarkSupport.setUpMachine(config);
+        if (metrics) {
+            _machine.setMetrics(new MachineMetrics(_machine.numRotors()));
+        }
+        _message = BenchmarkSupport.randomMessage(length);
+        _buffer = new char[length];
+    }
+
+    /** Convert one character, advancing the rotors. */
+    @Benchmark
+    public int convertChar() {
+        _next += 1;
+        if (_next == _machine.getAlphabet().size()) {
+            _next = 0;
+        }
+        return _machine.convert(_next);
+    }
+
+    /** Convert a whole message from its initial setting. */
+    @Benchmark
+    public String convertString() {
+        _machine.setRotors(BenchmarkSupport.SETTING);
+        return _machine.convert(_message);
+    }
+
+    /** Convert a whole message from its initial setting into a reused
+     *  buffer. */
+    @Benchmark
+    public char[] convertBuffer() {
+        _machine.setRotors(BenchmarkSupport.SETTING);
+        _machine.convert(_message, _buffer, 0);
+        return _buffer;
+    }
+
+    /** Convert one character from a snapshot and rewind to it, as a
+     *  search trying many continuations of one state does. */
+    @Benchmark
+    public int snapshotRestore() {
+        long state = _machine.snapshot();
+        int result = _machine.convert(_next);
+        _machine.restore(state);
+        return result;
+    }
+
+    /** Convert a whole message from its initial setting into a reused
+     *  buffer through the Vector API path. */
+    @Benchmark
+    public char[] convertVector() {
+        _machine.setRotors(BenchmarkSupport.SETTING);
+        _machine.convertVector(_message, _buffer, 0);
+        return _buffer;
+    }
+}
@@ -0,0 +1,76 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end runs of Main on generated input.
+ *  @author Michaela Warady
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MainBenchmark {
+
+    /** Configuration file to read. */
+    @Param({ BenchmarkSupport.DEFAULT_CONFIG })
+    public String config;
+
+    /** Number of message lines in the generated input. */
+    @Param({ "10", "1000" })
+    public int lines;
+
+    /** Approximate length of each generated message line. */
+    @Param({ "80" })
+    public int lineLength;
+
+    /** Generated input file. */
+    private Path _input;
+
+    /** Output file. */
+    private Path _output;
+
+    /** Generate the input file. */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        _input = BenchmarkSupport.writeInput(lines, lineLength);
+        _output = Files.createTempFile("enigma-bench", ".out");
+    }
+
+    /** Remove the generated files. */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(_input);
+        Files.deleteIfExists(_output);
+    }
+
+    /** Run Main over the generated input through the streaming path. */
+    @Benchmark
+    public void mainStreaming() {
+        Main.main(config, _input.toString(), _output.toString());
+    }
+
+    /** Run Main over the generated input in memory-mapped mode. */
+    @Benchmark
+    public void mainMapped() {
+        Main.main("-m", config, _input.toString(), _output.toString());
+    }
+}
@@ -0,0 +1,48 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Cost of building Permutations from cycle strings.
+ *  @author Michaela Warady
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** Cycles to parse: rotor I, rotor VII and reflector B. */
+    @Param({ "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)",
+             "(ANOUPFRIMBZTLWKSVEGCJYDHXQ)",
+             "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) (RX) (SZ) "
+             + "(TV)" })
+    public String cycles;
+
+    /** Alphabet of the permutations. */
+    private final Alphabet _alphabet = new CharacterRange('A', 'Z');
+
+    /** Build a Permutation from CYCLES. */
+    @Benchmark
+    public Permutation construct() {
+        return new Permutation(cycles, _alphabet);
+    }
+
+    /** Build a rotor, including its conversion tables, from CYCLES. */
+    @Benchmark
+    public Rotor constructRotor() {
+        return new MovingRotor("I", new Permutation(cycles, _alphabet), "Q");
+    }
+}
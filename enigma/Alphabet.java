@@ -1,5 +1,7 @@
 package enigma;
 
+import static enigma.EnigmaException.*;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
  *  @author P. N. Hilfinger
@@ -20,4 +22,66 @@ abstract class Alphabet {
      *  the alphabet. This is the inverse of toChar(). */
     abstract int toInt(char ch);
 
+    /** Returns the index of CH, or -1 if CH is not in the alphabet.  Unlike
+     *  toInt, this never throws, so callers that validate a whole message
+     *  before converting it pay for one lookup per character rather than
+     *  a contains() test followed by toInt(). */
+    int indexOf(char ch) {
+        return contains(ch) ? toInt(ch) : -1;
+    }
+
+    /** Returns character number INDEX as for toChar(), without checking
+     *  that 0 <= INDEX < size().  For callers whose indices are known to
+     *  be in range, such as the results of conversion. */
+    char charAt(int index) {
+        return toChar(index);
+    }
+
+    /** Returns the index of the character whose code point is CODEPOINT,
+     *  or -1 if it is not in the alphabet.  Alphabets with characters
+     *  outside the Basic Multilingual Plane must override this. */
+    int indexOfCodePoint(int codePoint) {
+        if (codePoint > Character.MAX_VALUE) {
+            return -1;
+        }
+        return indexOf((char) codePoint);
+    }
+
+    /** Returns the index of the message character whose code point is
+     *  CODEPOINT, taken as upper case, or -1 if that is not in the
+     *  alphabet. */
+    int foldedIndexOf(int codePoint) {
+        return indexOfCodePoint(Character.toUpperCase(codePoint));
+    }
+
+    /** Returns foldedIndexOf(CODEPOINT), which must not be -1. */
+    int toFoldedInt(int codePoint) {
+        int index = foldedIndexOf(codePoint);
+        if (index < 0) {
+            throw error("character out of range");
+        }
+        return index;
+    }
+
+    /** Returns the code point of character number INDEX, without checking
+     *  that 0 <= INDEX < size(), as for charAt(). */
+    int codePointAt(int index) {
+        return charAt(index);
+    }
+
+    /** Returns the number of chars, 1 or 2, that the longest of my
+     *  characters takes in UTF-16.  A buffer for a message converted into
+     *  my characters needs this many chars per message character. */
+    int maxCharCount() {
+        return 1;
+    }
+
+    /** Store character number INDEX into OUT at K, as one char or a
+     *  surrogate pair, and return the index in OUT following it.  Does
+     *  not check that 0 <= INDEX < size(), as for charAt(). */
+    int putChar(int index, char[] out, int k) {
+        out[k] = charAt(index);
+        return k + 1;
+    }
+
 }
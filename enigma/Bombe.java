@@ -0,0 +1,318 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/** A known-plaintext attack in the manner of the Turing bombe.  A crib
+ *  (plaintext believed to lie at a given offset in a ciphertext) gives a
+ *  menu: a graph whose nodes are letters and whose edges join each crib
+ *  letter to its ciphertext letter, labelled with its position.  For each
+ *  arrangement of rotors and each setting, a hypothesis that the most
+ *  connected menu letter is plugged to some letter is propagated through
+ *  the menu, as current through the bombe's scramblers and diagonal
+ *  board, until closure.  Settings at which the hypotheses are not all
+ *  contradicted are stops, reported with the plugboard connections they
+ *  imply.  The live wires of each letter are held as a long bit set, so
+ *  the alphabet may have at most 64 letters.
+ *  @author Michaela Warady
+ */
+class Bombe {
+
+    /** A bombe for machines described by TEMPLATE, testing that CRIB is
+     *  the decryption of the characters of CIPHERTEXT starting at
+     *  character number OFFSET.  Blanks and tabs in both are ignored. */
+    Bombe(MachineTemplate template, String crib, String ciphertext,
+          int offset) {
+        _template = template;
+        _alphabet = template.alphabet();
+        _size = _alphabet.size();
+        if (_size > Long.SIZE) {
+            throw new EnigmaException("Alphabet too large for the bombe.");
+        }
+        int[] plain = crib.replace(" ", "").replace("\t", "")
+            .codePoints().toArray();
+        int[] cipher = ciphertext.replace(" ", "").replace("\t", "")
+            .codePoints().toArray();
+        if (offset < 0 || offset + plain.length > cipher.length) {
+            throw new EnigmaException("Crib does not fit the ciphertext.");
+        }
+        _offset = offset;
+        _length = plain.length;
+        _plain = new int[_length];
+        _cipher = new int[_length];
+        int[] degree = new int[_size];
+        for (int i = 0; i < _length; i += 1) {
+            _plain[i] = _alphabet.toFoldedInt(plain[i]);
+            _cipher[i] = _alphabet.toFoldedInt(cipher[offset + i]);
+            if (_plain[i] == _cipher[i]) {
+                throw new EnigmaException(
+                        "Crib letter enciphers to itself.");
+            }
+            degree[_plain[i]] += 1;
+            degree[_cipher[i]] += 1;
+        }
+        _edges = new int[_size][];
+        _edgePositions = new int[_size][];
+        _testLetter = 0;
+        for (int x = 0; x < _size; x += 1) {
+            _edges[x] = new int[degree[x]];
+            _edgePositions[x] = new int[degree[x]];
+            if (degree[x] > degree[_testLetter]) {
+                _testLetter = x;
+            }
+            degree[x] = 0;
+        }
+        for (int i = 0; i < _length; i += 1) {
+            addEdge(_plain[i], _cipher[i], i, degree);
+            addEdge(_cipher[i], _plain[i], i, degree);
+        }
+    }
+
+    /** Return the menu letter whose plugboard partner is hypothesized. */
+    String testLetter() {
+        return Character.toString(_alphabet.codePointAt(_testLetter));
+    }
+
+    /** Test every arrangement of rotors at every setting, one task per
+     *  arrangement on the common ForkJoinPool, passing each stop to SINK
+     *  as it is found.  SINK may be called from several threads at once.
+     *  Returns when all arrangements have been tested. */
+    void run(Consumer<Stop> sink) {
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Rotor[] order : _template.arrangements()) {
+            tasks.add(ForkJoinTask.adapt(() -> search(order, sink)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /** Return every stop, as found by run. */
+    List<Stop> stops() {
+        ArrayList<Stop> result = new ArrayList<>();
+        run(stop -> {
+            synchronized (result) {
+                result.add(stop);
+            }
+        });
+        return result;
+    }
+
+    /** A setting at which the menu is consistent. */
+    static class Stop {
+
+        /** A stop with the rotors named ROTORS at setting SETTING (at the
+         *  start of the message), implying the plugboard connections
+         *  STECKERS. */
+        Stop(String[] rotors, String setting, String steckers) {
+            _rotors = rotors;
+            _setting = setting;
+            _steckers = steckers;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my setting, as for Machine.setRotors. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return the plugboard connections implied by the menu, in cycle
+         *  notation. */
+        String steckers() {
+            return _steckers;
+        }
+
+        /** Return the settings line selecting me, with the implied
+         *  plugboard connections. */
+        String settingsLine() {
+            return ("* " + String.join(" ", _rotors) + " " + _setting
+                    + " " + _steckers).trim();
+        }
+
+        @Override
+        public String toString() {
+            return settingsLine();
+        }
+
+        /** Names of my rotors. */
+        private final String[] _rotors;
+
+        /** My setting. */
+        private final String _setting;
+
+        /** Implied plugboard connections. */
+        private final String _steckers;
+    }
+
+    /** Record an edge from menu letter FROM to TO at crib position POS,
+     *  where COUNTS[FROM] edges of FROM are already recorded. */
+    private void addEdge(int from, int to, int pos, int[] counts) {
+        _edges[from][counts[from]] = to;
+        _edgePositions[from][counts[from]] = pos;
+        counts[from] += 1;
+    }
+
+    /** Test the rotors ORDER at every setting, passing stops to SINK. */
+    private void search(Rotor[] order, Consumer<Stop> sink) {
+        int slots = order.length;
+        Stepper stepper = new Stepper(Arrays.asList(order));
+        int[] start = new int[slots];
+        int[] settings = new int[slots];
+        int[] scramblers = new int[_length * _size];
+        long[] live = new long[_size];
+        int[] stack = new int[2 * _size * _size];
+        long total = 1;
+        for (int s = 1; s < slots; s += 1) {
+            total *= _size;
+        }
+        for (long id = 0; id < total; id += 1) {
+            long rest = id;
+            for (int s = slots - 1; s > 0; s -= 1) {
+                start[s] = (int) (rest % _size);
+                rest /= _size;
+            }
+            System.arraycopy(start, 0, settings, 0, slots);
+            stepper.advance(settings, _offset);
+            for (int i = 0; i < _length; i += 1) {
+                stepper.step(settings);
+                for (int a = 0; a < _size; a += 1) {
+                    scramblers[i * _size + a] = scramble(order, settings, a);
+                }
+            }
+            int found = test(scramblers, live, stack);
+            if (found >= 0) {
+                sink.accept(stop(order, start, live));
+            }
+        }
+    }
+
+    /** Return the result of passing A through the rotors and reflector
+     *  ORDER at SETTINGS, without a plugboard. */
+    private int scramble(Rotor[] order, int[] settings, int a) {
+        int d = a;
+        for (int q = order.length - 1; q > 0; q -= 1) {
+            d = order[q].convertForward(d, settings[q]);
+        }
+        d = order[0].convertForward(d, 0);
+        for (int r = 1; r < order.length; r += 1) {
+            d = order[r].convertBackward(d, settings[r]);
+        }
+        return d;
+    }
+
+    /** Apply the bombe's stop test with the crib-position permutations
+     *  SCRAMBLERS.  Returns the partner of the test letter at a stop, with
+     *  LIVE holding that hypothesis's closure, or -1 if there is no stop.
+     *  STACK is scratch space. */
+    private int test(int[] scramblers, long[] live, int[] stack) {
+        int count = Long.bitCount(close(0, scramblers, live, stack));
+        if (count == _size) {
+            return -1;
+        } else if (count == 1) {
+            return 0;
+        }
+        long dead = ~live[_testLetter];
+        for (int y = 1; y < _size; y += 1) {
+            if ((dead >>> y & 1) != 0
+                    && Long.bitCount(close(y, scramblers, live, stack)) == 1) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    /** Set LIVE to the closure of the hypothesis that the test letter is
+     *  plugged to X, given the crib-position permutations SCRAMBLERS, and
+     *  return the live set of the test letter.  LIVE[l] has bit b set iff
+     *  letter l may be plugged to b.  STACK is scratch space. */
+    private long close(int x, int[] scramblers, long[] live, int[] stack) {
+        Arrays.fill(live, 0);
+        live[_testLetter] = 1L << x;
+        int top = 0;
+        stack[top++] = _testLetter;
+        stack[top++] = x;
+        while (top > 0) {
+            int a = stack[--top];
+            int l = stack[--top];
+            if ((live[a] >>> l & 1) == 0) {
+                live[a] |= 1L << l;
+                stack[top++] = a;
+                stack[top++] = l;
+            }
+            int[] edges = _edges[l];
+            int[] positions = _edgePositions[l];
+            for (int e = 0; e < edges.length; e += 1) {
+                int m = edges[e];
+                int b = scramblers[positions[e] * _size + a];
+                if ((live[m] >>> b & 1) == 0) {
+                    live[m] |= 1L << b;
+                    stack[top++] = m;
+                    stack[top++] = b;
+                }
+            }
+        }
+        return live[_testLetter];
+    }
+
+    /** Return the stop for rotors ORDER at START, whose menu letters'
+     *  partners are the single live entries of LIVE. */
+    private Stop stop(Rotor[] order, int[] start, long[] live) {
+        String[] names = new String[order.length];
+        StringBuilder setting = new StringBuilder();
+        for (int s = 0; s < order.length; s += 1) {
+            names[s] = order[s].name().toUpperCase();
+            if (s > 0) {
+                setting.appendCodePoint(_alphabet.codePointAt(start[s]));
+            }
+        }
+        StringBuilder steckers = new StringBuilder();
+        for (int l = 0; l < _size; l += 1) {
+            if (_edges[l].length > 0 && Long.bitCount(live[l]) == 1) {
+                int p = Long.numberOfTrailingZeros(live[l]);
+                if (p > l || (p < l && _edges[p].length == 0)) {
+                    steckers.append('(')
+                        .appendCodePoint(_alphabet.codePointAt(l))
+                        .appendCodePoint(_alphabet.codePointAt(p))
+                        .append(") ");
+                }
+            }
+        }
+        return new Stop(names, setting.toString(),
+                steckers.toString().trim());
+    }
+
+    /** Description of the machines tested. */
+    private final MachineTemplate _template;
+
+    /** Alphabet of the machines. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Index in the ciphertext of the first crib character. */
+    private final int _offset;
+
+    /** Length of the crib. */
+    private final int _length;
+
+    /** Indices of the crib characters. */
+    private final int[] _plain;
+
+    /** Indices of the ciphertext characters under the crib. */
+    private final int[] _cipher;
+
+    /** For each letter, the letters it is joined to in the menu. */
+    private final int[][] _edges;
+
+    /** For each letter, the crib positions of its _edges. */
+    private final int[][] _edgePositions;
+
+    /** The letter whose partner is hypothesized. */
+    private int _testLetter;
+}
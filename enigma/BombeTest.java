@@ -0,0 +1,42 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Michaela Warady
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testBombe() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "I", "II", "III");
+        MachineTemplate template = new MachineTemplate(UPPER, 3, 2, allRotors);
+        String plain = "ATTACKATDAWNWEATHERFORECASTCLEARSKIES";
+        String cipher = template.instance("* B II I KD (AT) (SE) (OW)")
+            .convert(plain);
+        Bombe bombe = new Bombe(template, "WEATHERFORECASTCLEAR", cipher,
+                plain.indexOf("WEATHER"));
+        boolean found = false;
+        for (Bombe.Stop stop : bombe.stops()) {
+            if (stop.settingsLine().startsWith("* B II I KD ")) {
+                found = true;
+                assertTrue(stop.steckers().contains("(AT)"));
+                assertTrue(stop.steckers().contains("(ES)"));
+                assertTrue(stop.steckers().contains("(OW)"));
+            }
+        }
+        assertTrue(found);
+    }
+}
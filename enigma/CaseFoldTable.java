@@ -0,0 +1,79 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** A table from code points to the indices of an alphabet's characters
+ *  that folds case, so that a message character c is looked up as
+ *  Character.toUpperCase(c) with a single array access.  It covers the
+ *  characters of the alphabet and the lower- and title-case forms of
+ *  its letters, in one dense array spanning the smallest to the largest
+ *  of those, which is small for an alphabet drawn from one script.  Any
+ *  other character whose upper-case form differs from it (such as a
+ *  final sigma) is looked up a second time by that form.
+ *  @author Michaela Warady
+ */
+final class CaseFoldTable {
+
+    /** A table for the alphabet whose characters are the distinct code
+     *  points CODEPOINTS, in order. */
+    CaseFoldTable(int[] codePoints) {
+        if (codePoints.length > MAX_SIZE) {
+            throw error("alphabet too large");
+        }
+        int lo = Integer.MAX_VALUE, hi = -1;
+        for (int c : codePoints) {
+            int lower = Character.toLowerCase(c),
+                title = Character.toTitleCase(c);
+            lo = Math.min(lo, Math.min(c, Math.min(lower, title)));
+            hi = Math.max(hi, Math.max(c, Math.max(lower, title)));
+        }
+        _base = lo;
+        _index = new short[hi - lo + 1];
+        Arrays.fill(_index, (short) -1);
+        for (int x = 0; x < codePoints.length; x += 1) {
+            int c = codePoints[x];
+            put(c, c, x);
+            put(Character.toLowerCase(c), c, x);
+            put(Character.toTitleCase(c), c, x);
+        }
+    }
+
+    /** Return the index of the character Character.toUpperCase(CODEPOINT)
+     *  in my alphabet, or -1 if it is not there. */
+    int get(int codePoint) {
+        int i = lookup(codePoint);
+        if (i < 0) {
+            int upper = Character.toUpperCase(codePoint);
+            if (upper != codePoint) {
+                i = lookup(upper);
+            }
+        }
+        return i;
+    }
+
+    /** Record that code point FORM is looked up as the character C, at
+     *  index INDEX, if C is the upper-case form of FORM. */
+    private void put(int form, int c, int index) {
+        if (Character.toUpperCase(form) == c) {
+            _index[form - _base] = (short) index;
+        }
+    }
+
+    /** Return the entry for CODEPOINT, or -1 if it has none. */
+    private int lookup(int codePoint) {
+        int k = codePoint - _base;
+        return k >= 0 && k < _index.length ? _index[k] : -1;
+    }
+
+    /** The largest alphabet a table can index. */
+    static final int MAX_SIZE = Short.MAX_VALUE;
+
+    /** The smallest code point in my table. */
+    private final int _base;
+
+    /** _index[c - _base] is the index of Character.toUpperCase(c), or -1
+     *  if either it is not in the alphabet or I do not cover c. */
+    private final short[] _index;
+}
@@ -16,6 +16,15 @@ class CharacterRange extends Alphabet {
         if (_first > _last) {
             throw error("empty range of characters");
         }
+        if (size() <= CaseFoldTable.MAX_SIZE) {
+            int[] codePoints = new int[size()];
+            for (int x = 0; x < codePoints.length; x += 1) {
+                codePoints[x] = _first + x;
+            }
+            _fold = new CaseFoldTable(codePoints);
+        } else {
+            _fold = null;
+        }
     }
 
     @Override
@@ -44,7 +53,36 @@ class CharacterRange extends Alphabet {
         return ch - _first;
     }
 
+    @Override
+    int indexOf(char ch) {
+        return ch >= _first && ch <= _last ? ch - _first : -1;
+    }
+
+    @Override
+    char charAt(int index) {
+        return (char) (_first + index);
+    }
+
+    @Override
+    int indexOfCodePoint(int codePoint) {
+        return codePoint >= _first && codePoint <= _last
+            ? codePoint - _first : -1;
+    }
+
+    @Override
+    int foldedIndexOf(int codePoint) {
+        if (_fold == null) {
+            return super.foldedIndexOf(codePoint);
+        }
+        return _fold.get(codePoint);
+    }
+
     /** Range of characters in this Alphabet. */
     private char _first, _last;
 
+    /** Index of each message character, folded to upper case, or null
+     *  if I am too large for a CaseFoldTable, in which case characters
+     *  are folded as they are looked up. */
+    private final CaseFoldTable _fold;
+
 }
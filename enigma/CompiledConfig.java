@@ -0,0 +1,261 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/** A compact binary form of a configuration file, from which a Machine can
+ *  be built without parsing.  A compiled file holds the checksum and length
+ *  of the source configuration it was made from, the alphabet (the bounds
+ *  of a CharacterRange or the characters of a TableAlphabet), the numbers
+ *  of slots and pawls, and for each rotor its kind, name, notches and
+ *  wiring table.  It ends with a checksum of its own
+ *  contents, so that a damaged file is ignored rather than trusted.
+ *  @author Michaela Warady
+ */
+class CompiledConfig {
+
+    /** Return the file in directory DIR holding the compiled form of the
+     *  configuration file named CONFIGNAME.  Configurations with the same
+     *  file name in different directories get different files. */
+    static File cacheFile(String dir, String configName) {
+        File source = new File(configName).getAbsoluteFile();
+        return new File(dir, String.format("%s-%08x%s", source.getName(),
+                source.getPath().hashCode(), SUFFIX));
+    }
+
+    /** Return the checksum of configuration file contents SOURCE. */
+    static long checksum(byte[] source) {
+        CRC32C crc = new CRC32C();
+        crc.update(source);
+        return crc.getValue();
+    }
+
+    /** Return a Machine built from compiled file COMPILED, provided that it
+     *  exists, is intact, and was compiled from configuration file contents
+     *  SOURCE.  Otherwise, returns null. */
+    static Machine read(File compiled, byte[] source) {
+        if (!compiled.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(compiled.toPath(),
+                                                    READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (!intact(buf) || buf.getInt() != MAGIC
+                || buf.getInt() != VERSION
+                || buf.getLong() != checksum(source)
+                || buf.getInt() != source.length) {
+                return null;
+            }
+            return decode(buf);
+        } catch (IOException | RuntimeException excp) {
+            return null;
+        }
+    }
+
+    /** Write the compiled form of MACH, which was configured from
+     *  configuration file contents SOURCE, to COMPILED.  The file is
+     *  written under a temporary name and then moved into place, so that
+     *  concurrent readers see either the old file or the complete new one.
+     *  Returns false, leaving COMPILED unchanged, if MACH's alphabet has no
+     *  compiled form or the file cannot be written. */
+    static boolean write(Machine mach, byte[] source, File compiled) {
+        ByteBuffer buf = encode(mach, source);
+        if (buf == null) {
+            return false;
+        }
+        Path target = compiled.toPath();
+        Path temp = null;
+        try {
+            Path dir = target.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, compiled.getName(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, WRITE)) {
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException excp) {
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+            return false;
+        }
+    }
+
+    /** Return the compiled form of MACH, configured from configuration file
+     *  contents SOURCE, ready to be written, or null if MACH's alphabet is
+     *  neither a CharacterRange nor a TableAlphabet. */
+    static ByteBuffer encode(Machine mach, byte[] source) {
+        Alphabet alpha = mach.getAlphabet();
+        String alphabetChars;
+        if (alpha instanceof CharacterRange) {
+            alphabetChars = null;
+        } else if (alpha instanceof TableAlphabet) {
+            alphabetChars = ((TableAlphabet) alpha).chars();
+        } else {
+            return null;
+        }
+        int n = alpha.size();
+        ArrayList<Rotor> rotors = mach.allRotors();
+        int size = HEADER_SIZE + 1 + 3 * Integer.BYTES
+            + (alphabetChars == null ? 2 * Character.BYTES
+               : stringSize(alphabetChars));
+        for (Rotor r : rotors) {
+            size += 1 + stringSize(r.name()) + Integer.BYTES * n
+                + stringSize(notches(r));
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size + Integer.BYTES);
+        buf.putInt(MAGIC).putInt(VERSION).putLong(checksum(source))
+            .putInt(source.length);
+        if (alphabetChars == null) {
+            buf.put(RANGE);
+            buf.putChar(alpha.toChar(0)).putChar(alpha.toChar(n - 1));
+        } else {
+            buf.put(TABLE);
+            putString(buf, alphabetChars);
+        }
+        buf.putInt(mach.numRotors()).putInt(mach.numPawls())
+            .putInt(rotors.size());
+        for (Rotor r : rotors) {
+            buf.put(kind(r));
+            putString(buf, r.name());
+            putString(buf, notches(r));
+            Permutation perm = r.getPerm();
+            for (int x = 0; x < n; x += 1) {
+                buf.putInt(perm.permute(x));
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+        return buf;
+    }
+
+    /** Return the Machine described by BUF, which is positioned just after
+     *  the header. */
+    private static Machine decode(ByteBuffer buf) {
+        Alphabet alpha;
+        byte alphabetKind = buf.get();
+        if (alphabetKind == RANGE) {
+            alpha = new CharacterRange(buf.getChar(), buf.getChar());
+        } else if (alphabetKind == TABLE) {
+            alpha = new TableAlphabet(getString(buf));
+        } else {
+            throw new EnigmaException("bad compiled alphabet kind");
+        }
+        int n = alpha.size();
+        int numRotors = buf.getInt();
+        int numPawls = buf.getInt();
+        int count = buf.getInt();
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>(count);
+        int[] table = new int[n];
+        for (int k = 0; k < count; k += 1) {
+            byte kind = buf.get();
+            String name = getString(buf);
+            String notches = getString(buf);
+            for (int x = 0; x < n; x += 1) {
+                table[x] = buf.getInt();
+            }
+            Permutation perm = new Permutation(table, alpha);
+            if (kind == MOVING) {
+                rotors.add(new MovingRotor(name, perm, notches));
+            } else if (kind == FIXED) {
+                rotors.add(new FixedRotor(name, perm));
+            } else if (kind == REFLECTOR) {
+                rotors.add(new Reflector(name, perm));
+            } else {
+                throw new EnigmaException("bad compiled rotor kind");
+            }
+        }
+        return new Machine(alpha, numRotors, numPawls, rotors);
+    }
+
+    /** Return true iff the checksum at the end of BUF matches the rest of
+     *  its contents.  Leaves BUF positioned at its start. */
+    private static boolean intact(ByteBuffer buf) {
+        int end = buf.limit() - Integer.BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(buf.duplicate().limit(end));
+        return (int) crc.getValue() == buf.getInt(end);
+    }
+
+    /** Return the kind code of rotor R. */
+    private static byte kind(Rotor r) {
+        if (r instanceof MovingRotor) {
+            return MOVING;
+        } else if (r instanceof Reflector) {
+            return REFLECTOR;
+        } else {
+            return FIXED;
+        }
+    }
+
+    /** Return the notches of R, or "" if it has none. */
+    private static String notches(Rotor r) {
+        if (r instanceof MovingRotor) {
+            return ((MovingRotor) r).notches();
+        }
+        return "";
+    }
+
+    /** Return the number of bytes putString uses for S. */
+    private static int stringSize(String s) {
+        return Short.BYTES + Character.BYTES * s.length();
+    }
+
+    /** Append S to BUF as a length followed by its characters. */
+    private static void putString(ByteBuffer buf, String s) {
+        buf.putShort((short) s.length());
+        for (int x = 0; x < s.length(); x += 1) {
+            buf.putChar(s.charAt(x));
+        }
+    }
+
+    /** Return a string read from BUF, as written by putString. */
+    private static String getString(ByteBuffer buf) {
+        char[] chars = new char[buf.getShort()];
+        for (int x = 0; x < chars.length; x += 1) {
+            chars[x] = buf.getChar();
+        }
+        return new String(chars);
+    }
+
+    /** Suffix of compiled files. */
+    static final String SUFFIX = ".ecc";
+
+    /** First word of a compiled file. */
+    private static final int MAGIC = 0x454e4743;
+
+    /** Format version, changed whenever the layout changes. */
+    private static final int VERSION = 2;
+
+    /** Bytes of magic, version, source checksum and source length. */
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES
+        + Integer.BYTES;
+
+    /** Alphabet kind codes. */
+    private static final byte RANGE = 'R', TABLE = 'T';
+
+    /** Rotor kind codes. */
+    private static final byte MOVING = 'M', FIXED = 'N', REFLECTOR = 'R';
+}
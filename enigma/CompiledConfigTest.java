@@ -0,0 +1,85 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CompiledConfig class.
+ *  @author Michaela Warady
+ */
+public class CompiledConfigTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testCompiledConfig() throws IOException {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "I", "VI", "III");
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        byte[] source = "A-Z\n5 3\n...".getBytes();
+        File compiled =
+            File.createTempFile("enigma", CompiledConfig.SUFFIX);
+        try {
+            assertTrue(CompiledConfig.write(mach, source, compiled));
+            Machine copy = CompiledConfig.read(compiled, source);
+            assertEquals(5, copy.numRotors());
+            assertEquals(3, copy.numPawls());
+            assertEquals("ZM", ((MovingRotor) copy.allRotors().get(3))
+                    .notches());
+            String[] rotors = {"B", "BETA", "VI", "I", "III"};
+            mach.insertRotors(rotors);
+            mach.setRotors("AZMQ");
+            copy.insertRotors(rotors);
+            copy.setRotors("AZMQ");
+            String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+            assertEquals(mach.convert(msg), copy.convert(msg));
+
+            assertNull(CompiledConfig.read(compiled,
+                    "A-Z\n5 3\n..!".getBytes()));
+            byte[] bytes = Files.readAllBytes(
+                    compiled.toPath());
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(compiled.toPath(), bytes);
+            assertNull(CompiledConfig.read(compiled, source));
+        } finally {
+            compiled.delete();
+        }
+    }
+
+    @Test
+    public void testTableAlphabet() throws IOException {
+        Alphabet digits = new TableAlphabet("0123456789");
+        ArrayList<Rotor> allRotors = new ArrayList<>();
+        allRotors.add(new Reflector("R",
+                new Permutation("(05) (16) (27) (38) (49)", digits)));
+        allRotors.add(new MovingRotor("M",
+                new Permutation("(0123456789)", digits), "9"));
+        Machine mach = new Machine(digits, 2, 1, allRotors);
+        byte[] source = "0123456789\n2 1\n...".getBytes();
+        File compiled = File.createTempFile("enigma", CompiledConfig.SUFFIX);
+        try {
+            assertTrue(CompiledConfig.write(mach, source, compiled));
+            Machine copy = CompiledConfig.read(compiled, source);
+            assertEquals("0123456789",
+                    ((TableAlphabet) copy.getAlphabet()).chars());
+            String[] rotors = {"R", "M"};
+            mach.insertRotors(rotors);
+            mach.setRotors("0");
+            copy.insertRotors(rotors);
+            copy.setRotors("0");
+            assertEquals(mach.convert("31415926"), copy.convert("31415926"));
+        } finally {
+            compiled.delete();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/** The Java Flight Recorder events emitted by Main.  Each records how long
+ *  its step took, along with the sizes that step handled.  They fall into
+ *  three groups.  Configuration events (reading the configuration and
+ *  each rotor) and settings events happen a few times per run and are
+ *  always recorded.  Message line events are recorded when a line takes
+ *  at least a millisecond, so that a recording shows the slow lines of a
+ *  long job at little cost.  Character events trace every character
+ *  converted; they are disabled by default, and while they are disabled
+ *  message lines are converted as usual rather than one character at a
+ *  time.  None records a stack trace.  All may be reconfigured in a JFR
+ *  settings file under their names, enigma.*.
+ *
+ *  Loading the first event class loads the JFR machinery, which costs far
+ *  more than a short run of Main, so the event classes are only loaded if
+ *  Flight Recorder was running when this class was initialized (as with
+ *  java -XX:StartFlightRecording).  The factory methods here return begun
+ *  events, or null when events are not in use.
+ *  @author Michaela Warady
+ */
+final class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** Return a begun ConfigRead event, or null. */
+    static ConfigRead configRead() {
+        if (!RECORDING) {
+            return null;
+        }
+        ConfigRead event = new ConfigRead();
+        event.begin();
+        return event;
+    }
+
+    /** Return a begun RotorRead event, or null. */
+    static RotorRead rotorRead() {
+        if (!RECORDING) {
+            return null;
+        }
+        RotorRead event = new RotorRead();
+        event.begin();
+        return event;
+    }
+
+    /** Return a begun SettingsLine event, or null. */
+    static SettingsLine settingsLine() {
+        if (!RECORDING) {
+            return null;
+        }
+        SettingsLine event = new SettingsLine();
+        event.begin();
+        return event;
+    }
+
+    /** Return a begun MessageLine event, or null. */
+    static MessageLine messageLine() {
+        if (!RECORDING) {
+            return null;
+        }
+        MessageLine event = new MessageLine();
+        event.begin();
+        return event;
+    }
+
+    /** Return a begun CharacterTrace event, or null. */
+    static CharacterTrace characterTrace() {
+        if (!RECORDING) {
+            return null;
+        }
+        CharacterTrace event = new CharacterTrace();
+        event.begin();
+        return event;
+    }
+
+    /** Return true iff CharacterTrace events are being recorded, so that
+     *  messages should be converted one character at a time. */
+    static boolean tracing() {
+        return RECORDING && new CharacterTrace().isEnabled();
+    }
+
+    /** True iff Flight Recorder was running when I was initialized. */
+    private static final boolean RECORDING = FlightRecorder.isInitialized();
+
+    /** Reading a configuration into a Machine. */
+    @Name("enigma.Config")
+    @Label("Configuration")
+    @Category({ "Enigma", "Configuration" })
+    @Description("Reading a configuration file into a machine")
+    @StackTrace(false)
+    static class ConfigRead extends Event {
+        /** Name of the configuration file. */
+        @Label("File")
+        String file;
+
+        /** Size of the configuration. */
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        /** Number of rotors described. */
+        @Label("Rotors")
+        int rotors;
+
+        /** True iff the machine came from a compiled configuration. */
+        @Label("Compiled")
+        boolean compiled;
+    }
+
+    /** Reading the description of one rotor. */
+    @Name("enigma.Rotor")
+    @Label("Rotor")
+    @Category({ "Enigma", "Configuration" })
+    @Description("Parsing one rotor description")
+    @StackTrace(false)
+    static class RotorRead extends Event {
+        /** Name of the rotor. */
+        @Label("Name")
+        String name;
+
+        /** Type and notches, as written in the configuration. */
+        @Label("Type")
+        String type;
+
+        /** Length of the description. */
+        @Label("Length")
+        int length;
+    }
+
+    /** Applying a settings line. */
+    @Name("enigma.Settings")
+    @Label("Settings Line")
+    @Category({ "Enigma", "Messages" })
+    @Description("Setting up the machine from a settings line")
+    @StackTrace(false)
+    static class SettingsLine extends Event {
+        /** The settings line. */
+        @Label("Line")
+        String line;
+
+        /** Number of plugboard cycles. */
+        @Label("Plugboard Cycles")
+        int cycles;
+    }
+
+    /** Converting and writing one message line. */
+    @Name("enigma.MessageLine")
+    @Label("Message Line")
+    @Category({ "Enigma", "Messages" })
+    @Description("Converting and printing one message line")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static class MessageLine extends Event {
+        /** Number of characters in the line as read. */
+        @Label("Input Length")
+        long input;
+
+        /** Number of characters converted. */
+        @Label("Converted")
+        long converted;
+    }
+
+    /** Converting one character. */
+    @Name("enigma.Character")
+    @Label("Character")
+    @Category({ "Enigma", "Trace" })
+    @Description("Converting one message character")
+    @StackTrace(false)
+    @Enabled(false)
+    static class CharacterTrace extends Event {
+        /** The character as read. */
+        @Label("Input")
+        char input;
+
+        /** Its conversion. */
+        @Label("Output")
+        char output;
+    }
+}
@@ -0,0 +1,272 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** A cache of a machine's complete permutations (plugboard, rotors and
+ *  reflector together), one for each combination of moving-rotor settings
+ *  it has been used at.  Combinations are identified by a key packing the
+ *  moving rotors' settings in base size().  If every combination fits in
+ *  the byte limit, the cache is one flat array indexed by key; otherwise
+ *  it holds as many permutations as fit, discarding the least recently
+ *  used.  In that case permutations are kept in numbered slots of one
+ *  flat array, found through an open-addressed table from keys to slots
+ *  and ordered by a list of slot numbers, so that neither looking up nor
+ *  replacing a permutation allocates.
+ *  @author Michaela Warady
+ */
+class KeystreamCache {
+
+    /** A cache for a machine with an alphabet of SIZE <= MAX_SIZE
+     *  characters and PAWLS moving rotors, holding about MAXBYTES bytes
+     *  of permutations. */
+    KeystreamCache(int size, int pawls, long maxBytes) {
+        if (!fits(size, pawls)) {
+            throw new EnigmaException("Machine too large to cache.");
+        }
+        _size = size;
+        long tuples = 1;
+        for (int x = 0; x < pawls; x += 1) {
+            tuples *= size;
+        }
+        if (tuples * size <= Math.min(maxBytes, MAX_DENSE)) {
+            _capacity = (int) tuples;
+            _rows = new byte[(int) tuples * size];
+            _filled = new boolean[(int) tuples];
+        } else {
+            _capacity = (int) Math.max(1, Math.min(MAX_SLOTS,
+                    Math.min(maxBytes, MAX_DENSE) / size));
+            _filled = null;
+            allocate(Math.min(_capacity, INITIAL_SLOTS));
+        }
+    }
+
+    /** Return true iff a machine with an alphabet of SIZE characters and
+     *  PAWLS moving rotors can be cached: characters must fit in a byte
+     *  and keys in a long. */
+    static boolean fits(int size, int pawls) {
+        if (size > MAX_SIZE) {
+            return false;
+        }
+        long tuples = 1;
+        for (int x = 0; x < pawls; x += 1) {
+            if (tuples > Long.MAX_VALUE / size) {
+                return false;
+            }
+            tuples *= size;
+        }
+        return true;
+    }
+
+    /** Return the size of the alphabet permuted. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the image of INPUT under the permutation cached for KEY, or
+     *  -1 if there is none. */
+    int get(long key, int input) {
+        if (_filled != null) {
+            if (!_filled[(int) key]) {
+                return -1;
+            }
+            return _rows[(int) key * _size + input] & 0xff;
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            return -1;
+        }
+        touch(slot);
+        return _rows[slot * _size + input] & 0xff;
+    }
+
+    /** Cache ROW, where ROW[i] is the image of i, as the permutation for
+     *  KEY. */
+    void put(long key, int[] row) {
+        int slot;
+        if (_filled != null) {
+            slot = (int) key;
+            _filled[slot] = true;
+        } else {
+            slot = find(key);
+            if (slot >= 0) {
+                touch(slot);
+            } else {
+                slot = claim();
+                _keys[slot] = key;
+                map(slot);
+                link(slot);
+            }
+        }
+        int start = slot * _size;
+        for (int x = 0; x < _size; x += 1) {
+            _rows[start + x] = (byte) row[x];
+        }
+    }
+
+    /** Discard all cached permutations. */
+    void clear() {
+        if (_filled != null) {
+            Arrays.fill(_filled, false);
+        } else {
+            Arrays.fill(_table, 0);
+            _used = 0;
+            _newest = _oldest = -1;
+        }
+    }
+
+    /** Make room in a sparse cache for NSLOTS slots, keeping those in
+     *  use. */
+    private void allocate(int nslots) {
+        int n = _used;
+        _rows = _rows == null ? new byte[nslots * _size]
+            : Arrays.copyOf(_rows, nslots * _size);
+        _keys = _keys == null ? new long[nslots]
+            : Arrays.copyOf(_keys, nslots);
+        _newer = _newer == null ? new int[nslots]
+            : Arrays.copyOf(_newer, nslots);
+        _older = _older == null ? new int[nslots]
+            : Arrays.copyOf(_older, nslots);
+        _table = new int[Integer.highestOneBit(nslots) * 4];
+        for (int slot = 0; slot < n; slot += 1) {
+            map(slot);
+        }
+        if (n == 0) {
+            _newest = _oldest = -1;
+        }
+    }
+
+    /** Return a free slot, growing my arrays up to my capacity and then
+     *  evicting the least recently used permutation. */
+    private int claim() {
+        if (_used == _keys.length && _used < _capacity) {
+            allocate((int) Math.min(_capacity, 2L * _used));
+        }
+        if (_used < _keys.length) {
+            _used += 1;
+            return _used - 1;
+        }
+        int slot = _oldest;
+        unmap(slot);
+        unlink(slot);
+        return slot;
+    }
+
+    /** Return the slot holding the permutation for KEY, or -1. */
+    private int find(long key) {
+        int mask = _table.length - 1;
+        for (int h = hash(key) & mask; _table[h] != 0; h = (h + 1) & mask) {
+            if (_keys[_table[h] - 1] == key) {
+                return _table[h] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Enter SLOT in _table under its key. */
+    private void map(int slot) {
+        int mask = _table.length - 1;
+        int h = hash(_keys[slot]) & mask;
+        while (_table[h] != 0) {
+            h = (h + 1) & mask;
+        }
+        _table[h] = slot + 1;
+    }
+
+    /** Remove SLOT from _table, moving back any later entries of its
+     *  probe sequence that would otherwise no longer be found. */
+    private void unmap(int slot) {
+        int mask = _table.length - 1;
+        int hole = hash(_keys[slot]) & mask;
+        while (_table[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int h = (hole + 1) & mask; _table[h] != 0; h = (h + 1) & mask) {
+            int home = hash(_keys[_table[h] - 1]) & mask;
+            if (((h - home) & mask) >= ((h - hole) & mask)) {
+                _table[hole] = _table[h];
+                hole = h;
+            }
+        }
+        _table[hole] = 0;
+    }
+
+    /** Make SLOT the most recently used. */
+    private void touch(int slot) {
+        if (slot != _newest) {
+            unlink(slot);
+            link(slot);
+        }
+    }
+
+    /** Add SLOT to the recency list as its newest member. */
+    private void link(int slot) {
+        _older[slot] = _newest;
+        _newer[slot] = -1;
+        if (_newest >= 0) {
+            _newer[_newest] = slot;
+        } else {
+            _oldest = slot;
+        }
+        _newest = slot;
+    }
+
+    /** Remove SLOT from the recency list. */
+    private void unlink(int slot) {
+        if (_older[slot] >= 0) {
+            _newer[_older[slot]] = _newer[slot];
+        } else {
+            _oldest = _newer[slot];
+        }
+        if (_newer[slot] >= 0) {
+            _older[_newer[slot]] = _older[slot];
+        } else {
+            _newest = _older[slot];
+        }
+    }
+
+    /** Return the hash of KEY, spread over its bits. */
+    private static int hash(long key) {
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> 32);
+    }
+
+    /** Largest alphabet whose indices fit in a byte. */
+    static final int MAX_SIZE = 256;
+
+    /** Largest flat array, in bytes, used for a dense cache. */
+    private static final long MAX_DENSE = 1 << 30;
+
+    /** Most slots in a sparse cache. */
+    private static final long MAX_SLOTS = 1 << 24;
+
+    /** Number of slots a sparse cache starts with. */
+    private static final int INITIAL_SLOTS = 1024;
+
+    /** Size of the alphabet permuted. */
+    private final int _size;
+
+    /** Most permutations held. */
+    private final int _capacity;
+
+    /** The permutation for key (dense) or in slot (sparse) k occupies
+     *  _rows[k * _size .. (k + 1) * _size - 1]. */
+    private byte[] _rows;
+
+    /** Which keys of a dense cache hold permutations, or null if the cache
+     *  is sparse. */
+    private final boolean[] _filled;
+
+    /** Key of the permutation in each slot of a sparse cache. */
+    private long[] _keys;
+
+    /** Open-addressed table of 1 + the slot holding each key, or 0. */
+    private int[] _table;
+
+    /** Next newer and older slot in order of use, or -1. */
+    private int[] _newer, _older;
+
+    /** Most and least recently used slot, or -1 if none is used. */
+    private int _newest, _oldest;
+
+    /** Number of slots used, which are 0 .. _used - 1. */
+    private int _used;
+}
@@ -0,0 +1,59 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the KeystreamCache class.
+ *  @author Michaela Warady
+ */
+public class KeystreamCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testEviction() {
+        KeystreamCache cache = new KeystreamCache(4, 3, 4 * 3);
+        int[] row = {1, 2, 3, 0};
+        cache.put(5, row);
+        cache.put(9, row);
+        cache.put(13, row);
+        assertEquals(2, cache.get(5, 1));
+        cache.put(17, row);
+        assertEquals(-1, cache.get(9, 1));
+        assertEquals(3, cache.get(13, 2));
+        assertEquals(0, cache.get(17, 3));
+        assertEquals(1, cache.get(5, 0));
+
+        int capacity = 3000;
+        cache = new KeystreamCache(8, 8, 8L * capacity);
+        LinkedHashMap<Long, Integer> model =
+            new LinkedHashMap<>(16, 0.75f, true);
+        Random random = new Random(5);
+        for (int x = 0; x < 100000; x += 1) {
+            long key = random.nextInt(5000) * 977L;
+            int first = random.nextInt(8);
+            Integer expected = model.get(key);
+            assertEquals(expected == null ? -1 : expected,
+                    cache.get(key, 0));
+            if (expected == null) {
+                int[] perm = new int[8];
+                for (int y = 0; y < 8; y += 1) {
+                    perm[y] = (first + y) % 8;
+                }
+                cache.put(key, perm);
+                model.put(key, first);
+                if (model.size() > capacity) {
+                    model.remove(model.keySet().iterator().next());
+                }
+            }
+        }
+    }
+}
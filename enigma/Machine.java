@@ -1,7 +1,11 @@
 package enigma;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 
 /** Class that represents a complete enigma machine.
  *  @author Michaela Warady
@@ -87,51 +91,436 @@ class Machine {
             throw new EnigmaException(
                     "Number of moving rotors and number of pawls not equal.");
         }
+        compile();
+        _origin = settings();
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 upper-case letters. The first letter refers to the
      *  leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        if (setting.length() != numRotors() - 1) {
+        if (setting.codePointCount(0, setting.length()) != numRotors() - 1) {
             throw new EnigmaException(
                     "Need to set all rotors except reflector.");
         }
-        for (int z = 1; z <= setting.length(); z += 1) {
-            _myRotorStorage.get(z).set(setting.charAt(z - 1));
+        int a = 0;
+        for (int z = 1; z < numRotors(); z += 1) {
+            int c = setting.codePointAt(a);
+            a += Character.charCount(c);
+            int posn = _alphabet.indexOfCodePoint(c);
+            if (posn < 0) {
+                throw new EnigmaException("character out of range");
+            }
+            _myRotorStorage.get(z).set(posn);
+        }
+        compile();
+        _origin = settings();
+        if (_metrics != null) {
+            _metrics.settingsReset();
+        }
+    }
+
+    /** Set my rotors to the settings they would have after OFFSET
+     *  characters had been converted since they were last set by
+     *  setRotors (or inserted), regardless of what has been converted
+     *  since.  Every rotor, including any double stepping middle rotor,
+     *  ends exactly where convert(int) would leave it.  A Stepper counts
+     *  each rotor's advances from the notches it and its right neighbour
+     *  pass, so for the usual rotors, whose notches are at least three
+     *  settings apart, the cost does not depend on OFFSET, and a partial
+     *  decryption costs only the characters it converts.  For rotors
+     *  with closer notches, runs of characters that move only the
+     *  rightmost rotor are crossed in one operation, and the cost is
+     *  proportional to the number of turnovers in OFFSET characters. */
+    void seek(long offset) {
+        checkInserted();
+        if (offset < 0) {
+            throw new EnigmaException("Cannot seek to a negative offset.");
+        }
+        int[] settings = _origin.clone();
+        new Stepper(_myRotorStorage).advance(settings, offset);
+        for (int s = 1; s < settings.length; s += 1) {
+            _myRotorStorage.get(s).set(settings[s]);
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG, the characters of a message
+     *  from its OFFSET'th on, as for convert(String) after seek(OFFSET).
+     *  The cost of reaching OFFSET is that of seek. */
+    String convertRange(long offset, String msg) {
+        seek(offset);
+        return convert(msg);
+    }
+
+    /** Write the encoding/decoding of MSG, the characters of a message
+     *  from its OFFSET'th on, into OUT starting at index START, as for
+     *  convert(CharSequence, char[], int) after seek(OFFSET).  Returns
+     *  the number of chars written. */
+    int convertRange(long offset, CharSequence msg, char[] out, int start) {
+        seek(offset);
+        return convert(msg, out, start);
+    }
+
+    /** Return my state, the rotor in each slot and its setting, packed
+     *  into one long, to be given to restore(long).  Each slot is a bit
+     *  field holding the rotor's index among the available rotors above
+     *  its setting, wide enough for any index and setting; the
+     *  reflector's slot is most significant.  So the state fits in a
+     *  long when the fields for all slots take at most 63 bits (seven
+     *  slots for a dozen rotors over A-Z), as snapshotFits() reports;
+     *  other machines use snapshot(long[]).  Neither allocates, and
+     *  packing takes only shifts and masks, so search code can fork and
+     *  rewind a machine freely.  The plugboard is not part of the
+     *  state. */
+    long snapshot() {
+        checkInserted();
+        if (!snapshotFits()) {
+            throw new EnigmaException("Machine state does not fit in a long.");
+        }
+        long state = 0;
+        for (int s = 0; s < _slots.length; s += 1) {
+            state = (state << _slotBits) | slotState(s);
+        }
+        return state;
+    }
+
+    /** Return true iff snapshot() can pack my state into one long. */
+    boolean snapshotFits() {
+        return _slotBits * _slots.length < Long.SIZE;
+    }
+
+    /** Store my state in STATE, one long per slot holding the bit field
+     *  that snapshot() uses for it.  STATE must have one element per
+     *  slot. */
+    void snapshot(long[] state) {
+        checkInserted();
+        if (state.length != _slots.length) {
+            throw new EnigmaException("Wrong number of slots in state.");
+        }
+        for (int s = 0; s < _slots.length; s += 1) {
+            state[s] = slotState(s);
+        }
+    }
+
+    /** Return my rotors to the state STATE, as returned by snapshot() on
+     *  this machine or one with the same available rotors and number of
+     *  slots, as if by insertRotors and setRotors: seek then counts from
+     *  STATE.  The whole of STATE is checked before anything changes, and
+     *  if it puts different rotors in some slot, their arrangement is
+     *  checked as insertRotors would.  My tables are rebuilt if STATE
+     *  puts different rotors in some slot or changes the setting of my
+     *  reflector or a fixed rotor; otherwise, nothing is allocated. */
+    void restore(long state) {
+        checkInserted();
+        if (!snapshotFits()) {
+            throw new EnigmaException("Machine state does not fit in a long.");
+        }
+        long mask = (1L << _slotBits) - 1;
+        for (int s = _slots.length - 1; s >= 0; s -= 1) {
+            _restoreState[s] = state & mask;
+            state >>>= _slotBits;
+        }
+        if (state != 0) {
+            throw new EnigmaException("Bad machine state.");
+        }
+        restoreSlots();
+    }
+
+    /** Return my rotors to the state in STATE, as stored by
+     *  snapshot(long[]), as for restore(long). */
+    void restore(long[] state) {
+        checkInserted();
+        if (state.length != _slots.length) {
+            throw new EnigmaException("Wrong number of slots in state.");
+        }
+        System.arraycopy(state, 0, _restoreState, 0, state.length);
+        restoreSlots();
+    }
+
+    /** Return the bit field of slot S in snapshot(). */
+    private long slotState(int s) {
+        return ((long) _rotorIndex[s] << _settingBits) | _slots[s].setting();
+    }
+
+    /** Return the index of the rotor in bit field STATE. */
+    private int rotorIndex(long state) {
+        return (int) (state >>> _settingBits);
+    }
+
+    /** Put my rotors in the state whose bit fields are in _restoreState,
+     *  after checking it. */
+    private void restoreSlots() {
+        boolean rearranged = false, refixed = false;
+        for (int s = 0; s < _slots.length; s += 1) {
+            long state = _restoreState[s];
+            if (state < 0 || rotorIndex(state) >= _allRotorStorage.size()
+                || (state & ((1 << _settingBits) - 1)) >= _alphabet.size()) {
+                throw new EnigmaException("Bad machine state.");
+            }
+            rearranged |= rotorIndex(state) != _rotorIndex[s];
+            refixed |= s < _firstMoving
+                && (state & ((1 << _settingBits) - 1)) != _slots[s].setting();
+        }
+        if (rearranged) {
+            checkArrangement();
+        }
+        for (int s = 0; s < _slots.length; s += 1) {
+            Rotor rotor = _allRotorStorage.get(rotorIndex(_restoreState[s]));
+            _myRotorStorage.set(s, rotor);
+            rotor.set((int) (_restoreState[s] & ((1 << _settingBits) - 1)));
+        }
+        restored(rearranged || refixed);
+    }
+
+    /** Check that the rotors in the bit fields of _restoreState may be
+     *  arranged in my slots, as insertRotors requires. */
+    private void checkArrangement() {
+        int numMovingRotors = 0;
+        Rotor previous = null;
+        for (int s = 0; s < _slots.length; s += 1) {
+            int index = rotorIndex(_restoreState[s]);
+            Rotor rotor = _allRotorStorage.get(index);
+            if (s == 0 && !rotor.reflecting()) {
+                throw new EnigmaException("First rotor is not reflector.");
+            } else if (s > 0 && rotor.reflecting()) {
+                throw new EnigmaException("Cannot have multiple reflectors.");
+            } else if (s > 0 && !rotor.rotates() && previous.rotates()) {
+                throw new EnigmaException(
+                        "Cannot have a moving rotor before a fixed rotor.");
+            }
+            for (int t = 0; t < s; t += 1) {
+                if (rotorIndex(_restoreState[t]) == index) {
+                    throw new EnigmaException(
+                            "Rotor " + rotor.name().toUpperCase()
+                            + " is in more than one slot.");
+                }
+            }
+            if (rotor.rotates()) {
+                numMovingRotors += 1;
+            }
+            previous = rotor;
+        }
+        if (numMovingRotors != numPawls()) {
+            throw new EnigmaException(
+                    "Number of moving rotors and number of pawls not equal.");
+        }
+    }
+
+    /** Finish restoring my state, rebuilding my tables if REBUILD, as
+     *  when the rotors in my slots or the settings of my reflector and
+     *  fixed rotors have changed. */
+    private void restored(boolean rebuild) {
+        if (rebuild) {
+            compile();
+        }
+        for (int s = 0; s < _origin.length; s += 1) {
+            _origin[s] = _slots[s].setting();
+        }
+        if (_metrics != null) {
+            _metrics.settingsReset();
         }
     }
 
+    /** Return the cycle into which my rotor settings fall from their
+     *  current settings (see RotorCycle).  The rotors are not moved. */
+    RotorCycle cycle() {
+        checkInserted();
+        return new RotorCycle(new Stepper(_myRotorStorage), settings());
+    }
+
+    /** Return the number of bits needed to hold any of 0 .. N-1. */
+    private static int bitsFor(int n) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    /** Check that my rotors have been inserted. */
+    private void checkInserted() {
+        if (_origin == null) {
+            throw new EnigmaException("Rotors have not been inserted.");
+        }
+    }
+
+    /** Return the current setting of the rotor in each slot. */
+    private int[] settings() {
+        int[] result = new int[_myRotorStorage.size()];
+        for (int s = 0; s < result.length; s += 1) {
+            result[s] = _myRotorStorage.get(s).setting();
+        }
+        return result;
+    }
+
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
         this._plugboard = plugboard;
+        compile();
+        if (_metrics != null) {
+            _metrics.plugboardRebuilt();
+        }
+    }
+
+    /** Rebuild the compiled form of my rotors and plugboard.  The fixed
+     *  rotors and reflector never move between settings, so their
+     *  combined round trip is folded into _core; the plugboard is folded
+     *  into the rightmost rotor's conversions at each of its settings,
+     *  giving _entry and _exit.  A character then costs one lookup per
+     *  moving rotor in each direction plus one for _core.  Tables are
+     *  only built when the alphabet is small enough for Rotor's own
+     *  tables and at least one rotor moves; rotors set directly rather
+     *  than through setRotors are not seen until the next rebuild.  The
+     *  keystream cache, if any, is keyed only on the moving rotors'
+     *  settings, so it is cleared when the rotors in any slot or the
+     *  tables change. */
+    private void compile() {
+        Rotor[] oldSlots = _slots;
+        int[] oldCore = _core, oldEntry = _entry, oldExit = _exit;
+        buildTables();
+        if (_cache != null && !(Arrays.equals(oldSlots, _slots)
+                && Arrays.equals(oldCore, _core)
+                && Arrays.equals(oldEntry, _entry)
+                && Arrays.equals(oldExit, _exit))) {
+            _cache.clear();
+        }
+    }
+
+    /** Build _slots, _firstMoving, _core, _entry and _exit for compile. */
+    private void buildTables() {
+        _slots = _myRotorStorage.toArray(new Rotor[_myRotorStorage.size()]);
+        _rotorIndex = new int[_slots.length];
+        _restoreState = new long[_slots.length];
+        for (int s = 0; s < _slots.length; s += 1) {
+            _rotorIndex[s] = _allRotorStorage.indexOf(_slots[s]);
+        }
+        _settingBits = bitsFor(_alphabet.size());
+        _slotBits = _settingBits + bitsFor(_allRotorStorage.size());
+        _firstMoving = 1;
+        while (_firstMoving < _slots.length
+                && !_slots[_firstMoving].rotates()) {
+            _firstMoving += 1;
+        }
+        _core = _entry = _exit = null;
+        int n = _alphabet.size();
+        if (_firstMoving >= _slots.length || n > Rotor.MAX_TABLE_SIZE) {
+            return;
+        }
+        _core = new int[n];
+        for (int x = 0; x < n; x += 1) {
+            int d = x;
+            for (int q = _firstMoving - 1; q > 0; q -= 1) {
+                d = _slots[q].convertForward(d);
+            }
+            d = _slots[0].convertForward(d);
+            for (int r = 1; r < _firstMoving; r += 1) {
+                d = _slots[r].convertBackward(d);
+            }
+            _core[x] = d;
+        }
+        Rotor right = _slots[_slots.length - 1];
+        _entry = new int[n * n];
+        _exit = new int[n * n];
+        for (int posn = 0; posn < n; posn += 1) {
+            for (int p = 0; p < n; p += 1) {
+                _entry[posn * n + p] =
+                    right.convertForward(_plugboard.permute(p), posn);
+                _exit[posn * n + p] =
+                    _plugboard.invert(right.convertBackward(p, posn));
+            }
+        }
+    }
+
+    /** Cache the complete permutation of this machine for each
+     *  combination of moving-rotor settings it converts at, using about
+     *  MAXBYTES bytes, so that convert(String) and the buffer conversions
+     *  cost one lookup per character after stepping.  With every
+     *  combination cached (size ^ (pawls + 1) bytes, about 450 KB for
+     *  three pawls over A-Z) the cache is a flat array; with less room the
+     *  least recently used permutations are discarded.  MAXBYTES of 0
+     *  turns the cache off.  The cache is only used when the machine is
+     *  compiled and KeystreamCache.fits its shape. */
+    void setCacheLimit(long maxBytes) {
+        if (maxBytes <= 0
+                || !KeystreamCache.fits(_alphabet.size(), numPawls())) {
+            _cache = null;
+        } else {
+            _cache = new KeystreamCache(_alphabet.size(), numPawls(),
+                    maxBytes);
+        }
+    }
+
+    /** Count what I do in METRICS from now on, or stop counting if
+     *  METRICS is null.  METRICS must be for machines with my number of
+     *  slots, and may be shared with other machines. */
+    void setMetrics(MachineMetrics metrics) {
+        if (metrics != null && metrics.numSlots() != numRotors()) {
+            throw new EnigmaException("Metrics are for another machine.");
+        }
+        _metrics = metrics;
+    }
+
+    /** Return the metrics counting what I do, or null if there are
+     *  none. */
+    MachineMetrics metrics() {
+        return _metrics;
+    }
+
+    /** Advance my rotors for the next character, as described for
+     *  convert(int).  Advances of the rightmost rotor are left to the
+     *  callers to count along with the characters converted. */
+    private void advance() {
+        int last = _slots.length - 1;
+        for (int s = 1; s < last; s += 1) {
+            if (_slots[s].atNotch() && _slots[s - 1].rotates()) {
+                _slots[s].advance();
+                _slots[s - 1].advance();
+                if (_metrics != null) {
+                    _metrics.advanced(s, 1);
+                    _metrics.advanced(s - 1, 1);
+                    _metrics.doubleStepped(1);
+                }
+            }
+        }
+        if (_slots[last].atNotch() && _slots[last - 1].rotates()) {
+            _slots[last - 1].advance();
+            if (_metrics != null) {
+                _metrics.advanced(last - 1, 1);
+            }
+        }
+        _slots[last].advance();
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
+        if (_metrics != null) {
+            _metrics.converted(1);
+        }
+        return convertIndex(c);
+    }
+
+    /** Returns the result of convert(C), without counting it. */
+    private int convertIndex(int c) {
         int d = c;
-        for (int s = 1; s < _myRotorStorage.size(); s += 1) {
-            if (s == _myRotorStorage.size() - 1) {
-                if (_myRotorStorage.get(s).atNotch()
-                        && _myRotorStorage.get(s - 1).rotates()) {
-                    _myRotorStorage.get(s - 1).advance();
-                }
-                _myRotorStorage.get(s).advance();
-            } else if (_myRotorStorage.get(s).atNotch()
-                    && _myRotorStorage.get(s - 1).rotates()) {
-                _myRotorStorage.get(s).advance();
-                _myRotorStorage.get(s - 1).advance();
+        if (d < 0 || d >= _alphabet.size()) {
+            d = _plugboard.wrap(d);
+        }
+        advance();
+        int last = _slots.length - 1;
+        if (_core != null) {
+            for (int q = last; q >= _firstMoving; q -= 1) {
+                d = _slots[q].convertForward(d);
+            }
+            d = _core[d];
+            for (int r = _firstMoving; r <= last; r += 1) {
+                d = _slots[r].convertBackward(d);
             }
+            return d;
         }
-        for (int q = _myRotorStorage.size() - 1; q > 0; q -= 1) {
-            d = _myRotorStorage.get(q).convertForward(d);
+        for (int q = last; q > 0; q -= 1) {
+            d = _slots[q].convertForward(d);
         }
-        d = _myRotorStorage.get(0).convertForward(d);
-        for (int r = 1; r < _myRotorStorage.size();  r += 1) {
-            d = _myRotorStorage.get(r).convertBackward(d);
-
+        d = _slots[0].convertForward(d);
+        for (int r = 1; r <= last; r += 1) {
+            d = _slots[r].convertBackward(d);
         }
         return d;
     }
@@ -139,33 +528,322 @@ class Machine {
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String crypt = "";
-        String mg = msg;
-        mg = mg.replaceAll(" ", "");
-        mg = mg.replaceAll("\t", "");
-        for (int a = 0; a < mg.length(); a += 1) {
-            char c = mg.charAt(a);
-            int d;
-            int e;
-            char f;
-            e = _alphabet.toInt(
-                    (Character.toString(c)).toUpperCase().charAt(0));
-            e = this._plugboard.permute(e);
-            d = convert(e);
-            f = _alphabet.toChar(this._plugboard.invert(d));
-            crypt = crypt + f;
-        }
-        return crypt;
+        char[] crypt = new char[msg.length() * _alphabet.maxCharCount()];
+        int n = convert(msg, crypt, 0);
+        return new String(crypt, 0, n);
+    }
+
+    /** Write the encoding/decoding of MSG into OUT starting at index
+     *  START, updating the state of the rotors accordingly.  MSG is read
+     *  by code point, so that characters outside the Basic Multilingual
+     *  Plane count as one.  Blanks and tabs in MSG are skipped and
+     *  lower-case letters are treated as upper case.  OUT must have room
+     *  for MSG.length() * getAlphabet().maxCharCount() chars past START.
+     *  Returns the number of chars written. */
+    int convert(CharSequence msg, char[] out, int start) {
+        int k = start;
+        int count = 0;
+        try {
+            int a = 0;
+            while (a < msg.length()) {
+                int c = Character.codePointAt(msg, a);
+                a += Character.charCount(c);
+                if (c != ' ' && c != '\t') {
+                    k = _alphabet.putChar(convertCharacter(c), out, k);
+                    count += 1;
+                }
+            }
+        } finally {
+            if (_metrics != null) {
+                _metrics.converted(count);
+            }
+        }
+        return k - start;
+    }
+
+    /** Write the encoding/decoding of the LEN characters of MSG starting
+     *  at MSGSTART into OUT starting at OUTSTART, as for
+     *  convert(CharSequence, char[], int).  MSG and OUT may be the same
+     *  array with MSGSTART == OUTSTART, converting in place, provided
+     *  that getAlphabet().maxCharCount() is 1.  Returns the number of
+     *  chars written. */
+    int convert(char[] msg, int msgStart, int len, char[] out, int outStart) {
+        int k = outStart;
+        int count = 0;
+        try {
+            int end = msgStart + len;
+            int a = msgStart;
+            while (a < end) {
+                int c = Character.codePointAt(msg, a, end);
+                a += Character.charCount(c);
+                if (c != ' ' && c != '\t') {
+                    k = _alphabet.putChar(convertCharacter(c), out, k);
+                    count += 1;
+                }
+            }
+        } finally {
+            if (_metrics != null) {
+                _metrics.converted(count);
+            }
+        }
+        return k - outStart;
+    }
+
+    /** Write the encoding/decoding of MSG into OUT starting at index
+     *  START, as for convert(CharSequence, char[], int), and return the
+     *  number of characters written.  Characters are converted in blocks
+     *  of VECTOR_BLOCK: the rotors are first stepped through the whole
+     *  block, recording each moving rotor's setting for each character,
+     *  and the block is then passed through the compiled tables by
+     *  VectorConverter, several characters per instruction.  This needs
+     *  the jdk.incubator.vector module; convert(CharSequence, char[], int)
+     *  remains the reference.  If the machine is not compiled, this is the
+     *  same as convert.  If MSG contains a character outside the alphabet,
+     *  the rotors are left at the start of the block containing it. */
+    int convertVector(CharSequence msg, char[] out, int start) {
+        if (_entry == null) {
+            return convert(msg, out, start);
+        }
+        int n = _alphabet.size();
+        int last = _slots.length - 1;
+        int moving = _slots.length - _firstMoving;
+        int[][] settingRows = new int[moving][VECTOR_BLOCK];
+        int[][] tables = new int[2 * moving + 1][];
+        int[][] rows = new int[2 * moving + 1][];
+        for (int m = 0; m < moving; m += 1) {
+            Rotor rotor = _slots[last - m];
+            tables[m] = m == 0 ? _entry : rotor.forwardTable();
+            rows[m] = settingRows[m];
+            tables[2 * moving - m] = m == 0 ? _exit : rotor.backwardTable();
+            rows[2 * moving - m] = settingRows[m];
+        }
+        tables[moving] = _core;
+        int[] block = new int[VECTOR_BLOCK];
+        int k = start;
+        int len = 0;
+        int a = 0;
+        boolean done = false;
+        while (!done) {
+            done = a == msg.length();
+            if (!done) {
+                int c = Character.codePointAt(msg, a);
+                a += Character.charCount(c);
+                if (c == ' ' || c == '\t') {
+                    continue;
+                }
+                block[len] = _alphabet.toFoldedInt(c);
+                len += 1;
+            }
+            if (len == VECTOR_BLOCK || (done && len > 0)) {
+                for (int i = 0; i < len; i += 1) {
+                    advance();
+                    for (int m = 0; m < moving; m += 1) {
+                        settingRows[m][i] = _slots[last - m].setting() * n;
+                    }
+                }
+                if (_metrics != null) {
+                    _metrics.converted(len);
+                }
+                VectorConverter.convert(block, len, tables, rows);
+                for (int i = 0; i < len; i += 1) {
+                    k = _alphabet.putChar(block[i], out, k);
+                }
+                len = 0;
+            }
+        }
+        return k - start;
+    }
+
+    /** Returns the encoding/decoding of MSG, as for convert(String), but
+     *  converting segments of a long MSG concurrently on the common
+     *  ForkJoinPool. */
+    String convertParallel(String msg) {
+        char[] crypt = new char[msg.length() * _alphabet.maxCharCount()];
+        int n = convertParallel(msg, crypt, 0);
+        return new String(crypt, 0, n);
+    }
+
+    /** Write the encoding/decoding of MSG into OUT starting at index
+     *  START, as for convert(CharSequence, char[], int), and return the
+     *  number of characters written.  A MSG of at least 2 * MIN_SEGMENT
+     *  characters is split into segments that are converted concurrently
+     *  on the common ForkJoinPool, each starting from the rotor settings
+     *  computed for its offset by a Stepper.  The rotors end in the same
+     *  state as after a sequential conversion; if MSG contains a
+     *  character outside the alphabet, the rotor state is left
+     *  unchanged.  Messages in alphabets with characters outside the
+     *  Basic Multilingual Plane, whose segments' lengths in chars are not
+     *  known in advance, are converted sequentially. */
+    int convertParallel(CharSequence msg, char[] out, int start) {
+        int len = msg.length();
+        int segments = Math.min(len / MIN_SEGMENT,
+                SEGMENTS_PER_THREAD * ForkJoinPool.getCommonPoolParallelism());
+        if (segments < 2 || _alphabet.maxCharCount() > 1) {
+            return convert(msg, out, start);
+        }
+        int[] bounds = new int[segments + 1];
+        for (int i = 0; i <= segments; i += 1) {
+            bounds[i] = (int) ((long) len * i / segments);
+        }
+        int[] offsets = new int[segments + 1];
+        forEachSegment(segments, i ->
+            offsets[i + 1] = messageLength(msg, bounds[i], bounds[i + 1]));
+        for (int i = 0; i < segments; i += 1) {
+            offsets[i + 1] += offsets[i];
+        }
+        Stepper stepper = new Stepper(_myRotorStorage);
+        int[] initial = settings();
+        forEachSegment(segments, i -> {
+            int[] settings = initial.clone();
+            stepper.advance(settings, offsets[i]);
+            convertSegment(stepper, settings, msg, bounds[i], bounds[i + 1],
+                    out, start + offsets[i]);
+        });
+        stepper.advance(initial, offsets[segments], _metrics);
+        if (_metrics != null) {
+            _metrics.converted(offsets[segments]);
+        }
+        for (int s = 1; s < initial.length; s += 1) {
+            _myRotorStorage.get(s).set(initial[s]);
+        }
+        return offsets[segments];
+    }
+
+    /** Run BODY on 0 .. SEGMENTS-1 concurrently on the common
+     *  ForkJoinPool, returning when all have finished. */
+    private static void forEachSegment(int segments, IntConsumer body) {
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i += 1) {
+            int segment = i;
+            tasks.add(ForkJoinTask.adapt(() -> body.accept(segment)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /** Return the number of characters of MSG between indices FROM and
+     *  TO that convert(CharSequence, char[], int) would convert. */
+    private static int messageLength(CharSequence msg, int from, int to) {
+        int n = 0;
+        for (int a = from; a < to; a += 1) {
+            char c = msg.charAt(a);
+            if (c != ' ' && c != '\t') {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Convert the characters of MSG between indices FROM and TO into OUT
+     *  starting at index K, with the rotors at SETTINGS (indexed by slot
+     *  and advanced as each character is converted) according to
+     *  STEPPER.  The rotors themselves are not changed. */
+    private void convertSegment(Stepper stepper, int[] settings,
+                                CharSequence msg, int from, int to,
+                                char[] out, int k) {
+        for (int a = from; a < to; a += 1) {
+            char c = msg.charAt(a);
+            if (c != ' ' && c != '\t') {
+                int e = _alphabet.toFoldedInt(c);
+                stepper.step(settings);
+                int d = convertAt(this._plugboard.permute(e), settings);
+                out[k] = _alphabet.charAt(this._plugboard.invert(d));
+                k += 1;
+            }
+        }
+    }
+
+    /** Returns the result of converting the index C through my rotors
+     *  with the rotor in each slot at the setting SETTINGS[slot], without
+     *  advancing or otherwise changing the rotors. */
+    private int convertAt(int c, int[] settings) {
+        int d = c;
+        int n = _myRotorStorage.size();
+        for (int q = n - 1; q > 0; q -= 1) {
+            d = _myRotorStorage.get(q).convertForward(d, settings[q]);
+        }
+        d = _myRotorStorage.get(0).convertForward(d, 0);
+        for (int r = 1; r < n; r += 1) {
+            d = _myRotorStorage.get(r).convertBackward(d, settings[r]);
+        }
+        return d;
+    }
+
+    /** Returns the index of the encoding/decoding of the message
+     *  character whose code point is C, taken as upper case, after first
+     *  advancing the machine. */
+    private int convertCharacter(int c) {
+        int e = _alphabet.toFoldedInt(c);
+        if (_entry == null) {
+            int d = convertIndex(this._plugboard.permute(e));
+            return this._plugboard.invert(d);
+        }
+        advance();
+        if (_cache != null) {
+            long key = 0;
+            for (int s = _firstMoving; s < _slots.length; s += 1) {
+                key = key * _cache.size() + _slots[s].setting();
+            }
+            int d = _cache.get(key, e);
+            if (d < 0) {
+                int[] row = new int[_cache.size()];
+                for (int x = 0; x < row.length; x += 1) {
+                    row[x] = compiledConvert(x);
+                }
+                _cache.put(key, row);
+                d = row[e];
+            }
+            return d;
+        }
+        return compiledConvert(e);
+    }
+
+    /** Returns the conversion of the index E through my plugboard, rotors
+     *  and reflector at their current settings, using the compiled
+     *  tables and without advancing. */
+    private int compiledConvert(int e) {
+        int last = _slots.length - 1;
+        int row = _slots[last].setting() * _alphabet.size();
+        int d = _entry[row + e];
+        for (int q = last - 1; q >= _firstMoving; q -= 1) {
+            d = _slots[q].convertForward(d);
+        }
+        d = _core[d];
+        for (int r = _firstMoving; r < last; r += 1) {
+            d = _slots[r].convertBackward(d);
+        }
+        return _exit[row + d];
     }
 
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
+    /** Counts of what I do, or null. */
+    private MachineMetrics _metrics;
+
+    /** Setting of the rotor in each slot when my rotors were last set or
+     *  inserted, from which seek counts, or null before insertRotors. */
+    private int[] _origin;
+
+    /** Index among my available rotors of the rotor in each slot. */
+    private int[] _rotorIndex;
+
+    /** The bit field of each slot in the state being restored. */
+    private long[] _restoreState;
+
+    /** Width of the bit field of a setting in snapshot(), and of the
+     *  whole field of each slot. */
+    private int _settingBits, _slotBits;
+
     /** Returns alphabet. */
     public Alphabet getAlphabet() {
         return _alphabet;
     }
 
+    /** Returns all rotors available to this machine. */
+    ArrayList<Rotor> allRotors() {
+        return _allRotorStorage;
+    }
+
     /** Stores allrotors. */
     private ArrayList<Rotor> _allRotorStorage;
 
@@ -181,4 +859,38 @@ class Machine {
     /** Holds plugboard. */
     private Permutation _plugboard;
 
+    /** The rotors in my slots, as last compiled. */
+    private Rotor[] _slots = new Rotor[0];
+
+    /** Slot of my leftmost moving rotor. */
+    private int _firstMoving;
+
+    /** Round trip of an index from the right of my fixed rotors, through
+     *  them and the reflector and back, or null if not compiled. */
+    private int[] _core;
+
+    /** The plugboard followed by my rightmost rotor, indexed by that
+     *  rotor's setting * alphabet size + input, or null if not compiled. */
+    private int[] _entry;
+
+    /** The inverse of my rightmost rotor followed by the inverse
+     *  plugboard, laid out as _entry, or null if not compiled. */
+    private int[] _exit;
+
+    /** Cache of complete permutations by moving-rotor settings, or null
+     *  if caching is off. */
+    private KeystreamCache _cache;
+
+    /** Number of characters stepped and then converted together by
+     *  convertVector. */
+    static final int VECTOR_BLOCK = 1024;
+
+    /** Fewest characters converted by each concurrent segment in
+     *  convertParallel. */
+    static final int MIN_SEGMENT = 1 << 14;
+
+    /** Number of segments per worker thread in convertParallel, so that
+     *  work stealing can even out the load. */
+    private static final int SEGMENTS_PER_THREAD = 4;
+
 }
@@ -0,0 +1,116 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** A machine converting one message at a time, created by a
+ *  MachineTemplate.  The rotors are shared with the template and every
+ *  other instance, and are only ever read; this instance's rotor
+ *  positions live in its own int[] of slot settings.  An instance is
+ *  cheap to create and is meant to be confined to one thread.
+ *  @author Michaela Warady
+ */
+class MachineInstance {
+
+    /** An instance over ALPHA with rotors ROTORS in its slots (ROTORS[0]
+     *  being the reflector), all at setting 0, and plugboard PLUGBOARD. */
+    MachineInstance(Alphabet alpha, Rotor[] rotors, Permutation plugboard) {
+        _alphabet = alpha;
+        _rotors = rotors;
+        _stepper = new Stepper(Arrays.asList(rotors));
+        _settings = new int[rotors.length];
+        _plugboard = plugboard;
+    }
+
+    /** Set my rotors according to SETTING, which must be a string of
+     *  numRotors()-1 letters, as for Machine.setRotors. */
+    void setRotors(String setting) {
+        if (setting.codePointCount(0, setting.length())
+            != _rotors.length - 1) {
+            throw new EnigmaException(
+                    "Need to set all rotors except reflector.");
+        }
+        int a = 0;
+        for (int z = 1; z < _rotors.length; z += 1) {
+            int c = setting.codePointAt(a);
+            a += Character.charCount(c);
+            _settings[z] = _alphabet.indexOfCodePoint(c);
+            if (_settings[z] < 0) {
+                throw new EnigmaException("character out of range");
+            }
+        }
+    }
+
+    /** Return the setting of the rotor in slot S. */
+    int setting(int s) {
+        return _settings[s];
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  the machine. */
+    int convert(int c) {
+        advance();
+        return convertUnmoved(c);
+    }
+
+    /** Advance my rotors as for one character. */
+    void advance() {
+        _stepper.step(_settings);
+    }
+
+    /** Returns the result of converting the index C through my rotors and
+     *  reflector (not my plugboard) at their current settings, without
+     *  advancing them. */
+    int convertUnmoved(int c) {
+        int d = c;
+        for (int q = _rotors.length - 1; q > 0; q -= 1) {
+            d = _rotors[q].convertForward(d, _settings[q]);
+        }
+        d = _rotors[0].convertForward(d, 0);
+        for (int r = 1; r < _rotors.length; r += 1) {
+            d = _rotors[r].convertBackward(d, _settings[r]);
+        }
+        return d;
+    }
+
+    /** Returns the encoding/decoding of MSG, updating my rotor settings
+     *  accordingly. */
+    String convert(String msg) {
+        char[] crypt = new char[msg.length() * _alphabet.maxCharCount()];
+        int n = convert(msg, crypt, 0);
+        return new String(crypt, 0, n);
+    }
+
+    /** Write the encoding/decoding of MSG into OUT starting at index
+     *  START, as for Machine.convert(CharSequence, char[], int).  Returns
+     *  the number of characters written. */
+    int convert(CharSequence msg, char[] out, int start) {
+        int k = start;
+        int a = 0;
+        while (a < msg.length()) {
+            int c = Character.codePointAt(msg, a);
+            a += Character.charCount(c);
+            if (c != ' ' && c != '\t') {
+                int e = _alphabet.toFoldedInt(c);
+                int d = convert(_plugboard.permute(e));
+                k = _alphabet.putChar(_plugboard.invert(d), out, k);
+            }
+        }
+        return k - start;
+    }
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** The rotor in each slot; slot 0 holds the reflector. */
+    private final Rotor[] _rotors;
+
+    /** Stepping schedule of _rotors. */
+    private final Stepper _stepper;
+
+    /** Current setting of the rotor in each slot. */
+    private final int[] _settings;
+
+    /** My plugboard. */
+    private final Permutation _plugboard;
+}
@@ -0,0 +1,199 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import static enigma.EnigmaException.*;
+
+/** Counts of what Machines have done: characters converted, rotor
+ *  advances in each slot, double steps, resets of the rotor settings and
+ *  plugboard rebuilds.  One set of metrics may be shared by any number of
+ *  machines with the same number of slots, in any number of threads; the
+ *  counters are LongAdders, so concurrent updates neither contend nor get
+ *  lost.  Machines count characters and the rightmost rotor's advances
+ *  once per message or block rather than once per character, and the
+ *  other counts only on the rare paths that cause them, so metrics cost
+ *  little when on and a null test when off.  Counts are read by pulling a
+ *  snapshot or through JMX (see register).
+ *  @author Michaela Warady
+ */
+class MachineMetrics implements MachineMetricsMBean {
+
+    /** Metrics for machines with NUMSLOTS rotor slots. */
+    MachineMetrics(int numSlots) {
+        _advances = new LongAdder[numSlots];
+        for (int s = 0; s < numSlots; s += 1) {
+            _advances[s] = new LongAdder();
+        }
+    }
+
+    /** Return the number of rotor slots I count for. */
+    int numSlots() {
+        return _advances.length;
+    }
+
+    /** Record that N characters were converted, and so that the rightmost
+     *  rotor advanced N times. */
+    void converted(long n) {
+        _characters.add(n);
+        _advances[_advances.length - 1].add(n);
+    }
+
+    /** Record that the rotor in slot SLOT advanced N times. */
+    void advanced(int slot, long n) {
+        _advances[slot].add(n);
+    }
+
+    /** Record N double steps. */
+    void doubleStepped(long n) {
+        _doubleSteps.add(n);
+    }
+
+    /** Record that the rotors were set to a new initial setting. */
+    void settingsReset() {
+        _settingsResets.increment();
+    }
+
+    /** Record that the plugboard was replaced. */
+    void plugboardRebuilt() {
+        _plugboardRebuilds.increment();
+    }
+
+    /** Return the current counts.  Each count is exact as of some moment
+     *  during the call, but counts updated meanwhile by other threads may
+     *  not be mutually consistent. */
+    Snapshot snapshot() {
+        return new Snapshot(_characters.sum(), getRotorAdvances(),
+                _doubleSteps.sum(), _settingsResets.sum(),
+                _plugboardRebuilds.sum());
+    }
+
+    /** Publish me on the platform MBean server under the name
+     *  enigma:type=Machine,name=NAME, replacing any metrics already
+     *  there, and return that name. */
+    ObjectName register(String name) {
+        try {
+            ObjectName objectName =
+                new ObjectName("enigma:type=Machine,name=" + name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(
+                    new StandardMBean(this, MachineMetricsMBean.class),
+                    objectName);
+            return objectName;
+        } catch (JMException excp) {
+            throw error("could not register metrics: %s",
+                    excp.getMessage());
+        }
+    }
+
+    @Override
+    public long getCharactersConverted() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long[] getRotorAdvances() {
+        long[] result = new long[_advances.length];
+        for (int s = 0; s < result.length; s += 1) {
+            result[s] = _advances[s].sum();
+        }
+        return result;
+    }
+
+    @Override
+    public long getDoubleSteps() {
+        return _doubleSteps.sum();
+    }
+
+    @Override
+    public long getSettingsResets() {
+        return _settingsResets.sum();
+    }
+
+    @Override
+    public long getPlugboardRebuilds() {
+        return _plugboardRebuilds.sum();
+    }
+
+    @Override
+    public void reset() {
+        _characters.reset();
+        for (LongAdder adder : _advances) {
+            adder.reset();
+        }
+        _doubleSteps.reset();
+        _settingsResets.reset();
+        _plugboardRebuilds.reset();
+    }
+
+    /** The counts of a MachineMetrics at one time. */
+    static class Snapshot {
+
+        /** A snapshot of CHARACTERS characters converted, ADVANCES[s]
+         *  advances of slot s, DOUBLESTEPS double steps, SETTINGSRESETS
+         *  settings resets and PLUGBOARDREBUILDS plugboard rebuilds. */
+        Snapshot(long characters, long[] advances, long doubleSteps,
+                 long settingsResets, long plugboardRebuilds) {
+            _characters = characters;
+            _advances = advances;
+            _doubleSteps = doubleSteps;
+            _settingsResets = settingsResets;
+            _plugboardRebuilds = plugboardRebuilds;
+        }
+
+        /** Return the number of characters converted. */
+        long charactersConverted() {
+            return _characters;
+        }
+
+        /** Return the number of advances of the rotor in SLOT. */
+        long rotorAdvances(int slot) {
+            return _advances[slot];
+        }
+
+        /** Return the number of double steps. */
+        long doubleSteps() {
+            return _doubleSteps;
+        }
+
+        /** Return the number of settings resets. */
+        long settingsResets() {
+            return _settingsResets;
+        }
+
+        /** Return the number of plugboard rebuilds. */
+        long plugboardRebuilds() {
+            return _plugboardRebuilds;
+        }
+
+        /** Counts, as for the MachineMetrics accessors. */
+        private final long _characters, _doubleSteps, _settingsResets,
+            _plugboardRebuilds;
+
+        /** Advances of each slot. */
+        private final long[] _advances;
+    }
+
+    /** Characters converted. */
+    private final LongAdder _characters = new LongAdder();
+
+    /** Advances of the rotor in each slot. */
+    private final LongAdder[] _advances;
+
+    /** Double steps. */
+    private final LongAdder _doubleSteps = new LongAdder();
+
+    /** Settings resets. */
+    private final LongAdder _settingsResets = new LongAdder();
+
+    /** Plugboard rebuilds. */
+    private final LongAdder _plugboardRebuilds = new LongAdder();
+}
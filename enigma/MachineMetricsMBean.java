@@ -0,0 +1,30 @@
+package enigma;
+
+/** The management interface of MachineMetrics, through which its counts
+ *  are published over JMX.
+ *  @author Michaela Warady
+ */
+public interface MachineMetricsMBean {
+
+    /** Return the number of characters converted. */
+    long getCharactersConverted();
+
+    /** Return the number of times the rotor in each slot has advanced,
+     *  indexed by slot. */
+    long[] getRotorAdvances();
+
+    /** Return the number of times a rotor has advanced because it was
+     *  itself at a notch, carrying the rotor to its left with it. */
+    long getDoubleSteps();
+
+    /** Return the number of times the rotors have been set to a new
+     *  initial setting. */
+    long getSettingsResets();
+
+    /** Return the number of times the plugboard has been replaced and the
+     *  conversion tables rebuilt. */
+    long getPlugboardRebuilds();
+
+    /** Set all counts to 0. */
+    void reset();
+}
@@ -0,0 +1,74 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.management.ObjectName;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineMetrics class.
+ *  @author Michaela Warady
+ */
+public class MachineMetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testMetrics() throws Exception {
+        Alphabet ac = new CharacterRange('A', 'D');
+        Rotor[] machineRotors = {
+            new Reflector("R1", new Permutation("(AC) (BD)", ac)),
+            new MovingRotor("R2", new Permutation("(ABCD)", ac), "C"),
+            new MovingRotor("R3", new Permutation("(ABCD)", ac), "C"),
+            new MovingRotor("R4", new Permutation("(ABCD)", ac), "C"),
+        };
+        Machine mach = new Machine(
+                ac, 4, 3, new ArrayList<>(Arrays.asList(machineRotors)));
+        MachineMetrics metrics = new MachineMetrics(4);
+        mach.setMetrics(metrics);
+        mach.insertRotors(new String[] {"R1", "R2", "R3", "R4"});
+        mach.setRotors("AAA");
+        mach.setPlugboard(new Permutation("(AB)", ac));
+        mach.convert("AAAA AAAA");
+        MachineMetrics.Snapshot snap = metrics.snapshot();
+        assertEquals(8, snap.charactersConverted());
+        assertEquals(0, snap.rotorAdvances(0));
+        assertEquals(1, snap.rotorAdvances(1));
+        assertEquals(3, snap.rotorAdvances(2));
+        assertEquals(8, snap.rotorAdvances(3));
+        assertEquals(1, snap.doubleSteps());
+        assertEquals(1, snap.settingsResets());
+        assertEquals(1, snap.plugboardRebuilds());
+
+        StringBuilder msg = new StringBuilder();
+        for (int x = 0; x < 5 * Machine.MIN_SEGMENT; x += 1) {
+            msg.append("ABCD".charAt(x * 7 % 4));
+        }
+        metrics.reset();
+        mach.setRotors("ABC");
+        mach.convert(msg.toString());
+        long[] sequential = metrics.getRotorAdvances();
+        long doubleSteps = metrics.getDoubleSteps();
+        metrics.reset();
+        mach.setRotors("ABC");
+        mach.convertParallel(msg.toString());
+        assertArrayEquals(sequential, metrics.getRotorAdvances());
+        assertEquals(doubleSteps, metrics.getDoubleSteps());
+        assertEquals(msg.length(), metrics.getCharactersConverted());
+
+        ObjectName name = metrics.register("test");
+        assertEquals((long) msg.length(),
+                ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(name, "CharactersConverted"));
+    }
+}
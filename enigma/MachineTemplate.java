@@ -0,0 +1,235 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** The fixed description of an enigma machine: its alphabet, number of
+ *  slots and pawls, and available rotors.  A template is never modified,
+ *  so it may be shared freely between threads; each message is converted
+ *  by its own MachineInstance, which keeps its rotor settings to itself.
+ *  @author Michaela Warady
+ */
+class MachineTemplate {
+
+    /** A template with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  0 <= PAWLS < NUMROTORS pawls, and available rotors ALLROTORS. */
+    MachineTemplate(Alphabet alpha, int numRotors, int pawls,
+                    List<Rotor> allRotors) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _numPawls = pawls;
+        _allRotors = allRotors.toArray(new Rotor[allRotors.size()]);
+    }
+
+    /** A template describing the same machine as MACH. */
+    MachineTemplate(Machine mach) {
+        this(mach.getAlphabet(), mach.numRotors(), mach.numPawls(),
+                mach.allRotors());
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls I have. */
+    int numPawls() {
+        return _numPawls;
+    }
+
+    /** Return the rotors available to my instances. */
+    List<Rotor> rotors() {
+        return Collections.unmodifiableList(Arrays.asList(_allRotors));
+    }
+
+    /** Return every legal arrangement of my rotors in my slots: a
+     *  reflector in slot 0, distinct non-moving rotors in the slots
+     *  before the last numPawls(), and distinct moving rotors in those.
+     *  Each arrangement is indexed by slot. */
+    List<Rotor[]> arrangements() {
+        ArrayList<Rotor[]> result = new ArrayList<>();
+        arrange(new Rotor[_numRotors], 0, result);
+        return result;
+    }
+
+    /** Add to RESULT every arrangement that fills slots SLOT and beyond of
+     *  CHOSEN, whose earlier slots are already filled. */
+    private void arrange(Rotor[] chosen, int slot, List<Rotor[]> result) {
+        if (slot == chosen.length) {
+            result.add(chosen.clone());
+            return;
+        }
+        for (Rotor r : _allRotors) {
+            boolean fits;
+            if (slot == 0) {
+                fits = r.reflecting();
+            } else if (slot < _numRotors - _numPawls) {
+                fits = !r.reflecting() && !r.rotates();
+            } else {
+                fits = r.rotates();
+            }
+            if (fits && !Arrays.asList(chosen).subList(0, slot).contains(r)) {
+                chosen[slot] = r;
+                arrange(chosen, slot + 1, result);
+            }
+        }
+        chosen[slot] = null;
+    }
+
+    /** Return a new instance configured by SETTINGS, a settings line of
+     *  the form accepted by Main ("* B BETA III IV I AXLE (HQ) (EX)"). */
+    MachineInstance instance(String settings) {
+        String[] sets = settings.split(" ");
+        if (sets.length < _numRotors + 2) {
+            throw new EnigmaException(
+                    "Need to set all rotors except reflector.");
+        }
+        String[] rotors = Arrays.copyOfRange(sets, 1, _numRotors + 1);
+        String perms = "";
+        for (int x = _numRotors + 1; x < sets.length; x += 1) {
+            perms = perms + sets[x] + " ";
+        }
+        return instance(rotors, sets[_numRotors + 1],
+                new Permutation(perms, _alphabet));
+    }
+
+    /** Return a new instance with the rotors named ROTORS in its slots
+     *  (ROTORS[0] names the reflector), set to SETTING as for
+     *  Machine.setRotors, and with plugboard PLUGBOARD. */
+    MachineInstance instance(String[] rotors, String setting,
+                             Permutation plugboard) {
+        MachineInstance result =
+            new MachineInstance(_alphabet, selectRotors(rotors), plugboard);
+        result.setRotors(setting);
+        return result;
+    }
+
+    /** Return the results of converting each of MESSAGES with a fresh
+     *  instance configured by the corresponding entry of SETTINGS, using
+     *  one thread per available processor. */
+    List<String> convertAll(List<String> settings, List<String> messages) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return convertAll(settings, messages, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** Return the results of converting each of MESSAGES with a fresh
+     *  instance configured by the corresponding entry of SETTINGS.  The
+     *  pairs are divided into blocks that are converted concurrently on
+     *  EXECUTOR. */
+    List<String> convertAll(List<String> settings, List<String> messages,
+                            ExecutorService executor) {
+        if (settings.size() != messages.size()) {
+            throw new EnigmaException(
+                    "Need one settings line for each message.");
+        }
+        int n = messages.size();
+        String[] results = new String[n];
+        int blocks = Math.min(n, BLOCKS_PER_THREAD
+                * Runtime.getRuntime().availableProcessors());
+        ArrayList<Future<?>> futures = new ArrayList<>(blocks);
+        for (int b = 0; b < blocks; b += 1) {
+            int from = (int) ((long) n * b / blocks);
+            int to = (int) ((long) n * (b + 1) / blocks);
+            futures.add(executor.submit(() -> {
+                for (int x = from; x < to; x += 1) {
+                    results[x] =
+                        instance(settings.get(x)).convert(messages.get(x));
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new EnigmaException(excp.getCause().toString());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new EnigmaException("Interrupted.");
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /** Return the rotors named NAMES, checked as by
+     *  Machine.insertRotors. */
+    private Rotor[] selectRotors(String[] names) {
+        if (names.length != _numRotors) {
+            throw new EnigmaException("Not the correct number of rotors.");
+        }
+        Rotor[] slots = new Rotor[names.length];
+        int numMovingRotors = 0;
+        for (int x = 0; x < names.length; x += 1) {
+            slots[x] = findRotor(names[x], slots, x);
+            if (x == 0 && !slots[x].reflecting()) {
+                throw new EnigmaException("First rotor is not reflector.");
+            } else if (x > 0 && slots[x].reflecting()) {
+                throw new EnigmaException("Cannot have multiple reflectors.");
+            } else if (x > 0 && !slots[x].rotates()
+                    && slots[x - 1].rotates()) {
+                throw new EnigmaException(
+                        "Cannot have a moving rotor before a fixed rotor.");
+            }
+            if (slots[x].rotates()) {
+                numMovingRotors += 1;
+            }
+        }
+        if (numMovingRotors != _numPawls) {
+            throw new EnigmaException(
+                    "Number of moving rotors and number of pawls not equal.");
+        }
+        return slots;
+    }
+
+    /** Return the first available rotor named NAME that is not among the
+     *  first N entries of CHOSEN. */
+    private Rotor findRotor(String name, Rotor[] chosen, int n) {
+        for (Rotor z : _allRotors) {
+            if (z.name().toUpperCase().equals(name)
+                    && !Arrays.asList(chosen).subList(0, n).contains(z)) {
+                return z;
+            }
+        }
+        throw new EnigmaException(
+                "Rotor " + name + " is not an available "
+                        + "rotor for this machine.");
+    }
+
+    /** Number of blocks per processor in convertAll, so that blocks of
+     *  unequal cost even out. */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _numPawls;
+
+    /** All rotors available to my instances. */
+    private final Rotor[] _allRotors;
+}
@@ -0,0 +1,52 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineTemplate class.
+ *  @author Michaela Warady
+ */
+public class MachineTemplateTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testTemplateInstances() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "III", "IV", "I");
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        MachineTemplate template = new MachineTemplate(mach);
+        String settings = "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+        String msg = "FROM his shoulder Hiawatha";
+        String cipher = "QVPQS OKOIL PUBKJ ZPISF XDW".replace(" ", "");
+
+        MachineInstance first = template.instance(settings);
+        MachineInstance second = template.instance(settings);
+        assertEquals(cipher, first.convert(msg));
+        assertEquals(cipher, second.convert(msg));
+        assertEquals(0, allRotors.get(4).setting());
+
+        List<String> results = template.convertAll(
+                Arrays.asList(settings, settings, settings),
+                Arrays.asList(msg, cipher, msg));
+        assertEquals(Arrays.asList(cipher, msg.replace(" ", "").toUpperCase(),
+                cipher), results);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTemplateBadRotors() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "I");
+        MachineTemplate template = new MachineTemplate(UPPER, 2, 1, allRotors);
+        template.instance("* I B A");
+    }
+}
@@ -4,6 +4,8 @@ import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -57,6 +59,314 @@ public class MachineTest {
         assertEquals("ABDA", getSetting(ac, machineRotors));
     }
 
+    @Test
+    public void testConvertIntoBuffer() {
+        Alphabet ac = new CharacterRange('A', 'D');
+        Rotor[] machineRotors = {
+            new Reflector("R1", new Permutation("(AC) (BD)", ac)),
+            new MovingRotor("R2", new Permutation("(ABCD)", ac), "C"),
+            new MovingRotor("R3", new Permutation("(AB) (CD)", ac), "C"),
+        };
+        String[] rotors = {"R1", "R2", "R3"};
+        Machine mach = new Machine(
+                ac, 3, 2, new ArrayList<>(Arrays.asList(machineRotors)));
+        mach.insertRotors(rotors);
+        mach.setRotors("AA");
+        String expected = mach.convert("ab cd\tDCBA");
+
+        mach.setRotors("AA");
+        char[] buf = "ab cd\tDCBA".toCharArray();
+        int n = mach.convert(buf, 0, buf.length, buf, 0);
+        assertEquals(8, n);
+        assertEquals(expected, new String(buf, 0, n));
+
+        mach.setRotors("AA");
+        char[] out = new char[10];
+        assertEquals(8, mach.convert(new StringBuilder("abcd DCBA"), out, 2));
+        assertEquals(expected, new String(out, 2, 8));
+    }
+
+    @Test
+    public void testConvertParallel() {
+        Rotor[] machineRotors = navalRotors("B", "Beta", "VI", "II", "I")
+            .toArray(new Rotor[0]);
+        String[] rotors = {"B", "BETA", "VI", "II", "I"};
+        Machine mach = new Machine(
+                UPPER, 5, 3, new ArrayList<>(Arrays.asList(machineRotors)));
+        mach.insertRotors(rotors);
+        StringBuilder msg = new StringBuilder();
+        for (int x = 0; msg.length() < 5 * Machine.MIN_SEGMENT; x += 1) {
+            msg.append(UPPER_STRING.charAt((x * 7 + x / 26) % 26));
+            if (x % 11 == 0) {
+                msg.append(' ');
+            }
+        }
+        mach.setRotors("AMDL");
+        String expected = mach.convert(msg.toString());
+        String endSetting = getSetting(UPPER, machineRotors);
+
+        mach.setRotors("AMDL");
+        assertEquals(expected, mach.convertParallel(msg.toString()));
+        assertEquals(endSetting, getSetting(UPPER, machineRotors));
+    }
+
+    @Test
+    public void testSeek() {
+        Rotor[] machineRotors = navalRotors("B", "Beta", "VI", "II", "I")
+            .toArray(new Rotor[0]);
+        Machine mach = new Machine(
+                UPPER, 5, 3, new ArrayList<>(Arrays.asList(machineRotors)));
+        mach.insertRotors(new String[] {"B", "BETA", "VI", "II", "I"});
+        StringBuilder msg = new StringBuilder();
+        for (int x = 0; x < 20000; x += 1) {
+            msg.append(UPPER_STRING.charAt((x * 11 + x / 26) % 26));
+        }
+        mach.setRotors("AMDO");
+        String expected = mach.convert(msg.toString());
+        String endSetting = getSetting(UPPER, machineRotors);
+
+        int[] offsets = {0, 1, 2, 25, 26, 27, 676, 677, 9999, 19990};
+        for (int offset : offsets) {
+            int end = Math.min(offset + 10, msg.length());
+            assertEquals("offset " + offset, expected.substring(offset, end),
+                    mach.convertRange(offset, msg.substring(offset, end)));
+        }
+        mach.seek(msg.length());
+        assertEquals(endSetting, getSetting(UPPER, machineRotors));
+        mach.seek(0);
+        assertEquals("AAMDO", getSetting(UPPER, machineRotors));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSeekNegative() {
+        Alphabet ac = new CharacterRange('A', 'D');
+        Rotor[] machineRotors = {
+            new Reflector("R1", new Permutation("(AC) (BD)", ac)),
+            new MovingRotor("R2", new Permutation("(ABCD)", ac), "C"),
+        };
+        Machine mach = new Machine(
+                ac, 2, 1, new ArrayList<>(Arrays.asList(machineRotors)));
+        mach.insertRotors(new String[] {"R1", "R2"});
+        mach.seek(-1);
+    }
+
+    @Test
+    public void testSnapshot() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "C", "Beta", "Gamma",
+                "I", "II", "III", "IV", "V");
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        mach.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        mach.setRotors("AXLE");
+        String msg = "HELLOWORLDTHISISATESTOFTHESNAPSHOTS";
+        mach.convert(msg);
+        assertTrue(mach.snapshotFits());
+        long state = mach.snapshot();
+        long[] slots = new long[5];
+        mach.snapshot(slots);
+        String expected = mach.convert(msg);
+        mach.restore(state);
+        assertEquals(expected, mach.convert(msg));
+        mach.restore(slots);
+        assertEquals(expected, mach.convert(msg));
+        long after = mach.snapshot();
+        mach.restore(state);
+        mach.seek(msg.length());
+        assertEquals(after, mach.snapshot());
+
+        Machine other = new Machine(UPPER, 5, 3, allRotors);
+        other.insertRotors(new String[] {"C", "GAMMA", "V", "II", "I"});
+        other.setRotors("QQQQ");
+        other.restore(state);
+        assertEquals(expected, other.convert(msg));
+    }
+
+    @Test
+    public void testRestoreFixedSetting() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "III", "IV", "I");
+        String[] rotors = {"B", "BETA", "III", "IV", "I"};
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        Machine fresh = new Machine(UPPER, 5, 3, allRotors);
+        fresh.insertRotors(rotors);
+        fresh.setRotors("AXLE");
+        String expected = fresh.convert(msg);
+
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        mach.insertRotors(rotors);
+        mach.setRotors("AXLE");
+        long state = mach.snapshot();
+        mach.setRotors("QXLE");
+        mach.restore(state);
+        assertEquals(expected, mach.convert(msg));
+    }
+
+    @Test
+    public void testRestoreCached() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "II", "III",
+                "I");
+        String msg = "ONTHESHORESOFGITCHEGUMEE";
+        Machine swapped = new Machine(UPPER, 5, 3, allRotors);
+        swapped.insertRotors(new String[] {"B", "BETA", "III", "II", "I"});
+        swapped.setRotors("AXLE");
+        long state = swapped.snapshot();
+        String expected = swapped.convert(msg);
+
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        mach.setCacheLimit(1 << 20);
+        mach.insertRotors(new String[] {"B", "BETA", "II", "III", "I"});
+        mach.setRotors("AXLE");
+        mach.convert(msg);
+        mach.restore(state);
+        assertEquals(expected, mach.convert(msg));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRestoreBadState() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "I");
+        Machine mach = new Machine(UPPER, 2, 1, allRotors);
+        mach.insertRotors(new String[] {"B", "I"});
+        mach.restore(-1L);
+    }
+
+    @Test
+    public void testRestoreBadArrangement() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "I", "II");
+        Machine mach = new Machine(UPPER, 3, 2, allRotors);
+        mach.insertRotors(new String[] {"B", "I", "II"});
+        long[] state = new long[3];
+        mach.snapshot(state);
+        long good = mach.snapshot();
+        state[0] = state[2] = state[1];
+        try {
+            mach.restore(state);
+            fail("restored a rotor into three slots");
+        } catch (EnigmaException excp) {
+            assertEquals(good, mach.snapshot());
+        }
+        mach.snapshot(state);
+        try {
+            mach.restore(new long[] {state[0], state[1], state[1]});
+            fail("restored a rotor into two slots");
+        } catch (EnigmaException excp) {
+            assertEquals(good, mach.snapshot());
+        }
+        long[] swapped = {state[1], state[0], state[2]};
+        try {
+            mach.restore(swapped);
+            fail("restored a reflector out of the first slot");
+        } catch (EnigmaException excp) {
+            assertEquals(good, mach.snapshot());
+        }
+        mach.restore(new long[] {state[0], state[2], state[1]});
+        mach.restore(good);
+        assertEquals(good, mach.snapshot());
+    }
+
+    @Test
+    public void testCompiledPlugboardAndFixedRotors() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "III", "IV", "I");
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        mach.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        assertEquals("QVPQSOKOILPUBKJZPISFXDW",
+                mach.convert("FROM his shoulder Hiawatha"));
+
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("", UPPER));
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        assertEquals("FROMHISSHOULDERHIAWATHA",
+                mach.convert("QVPQS OKOIL PUBKJ ZPISF XDW"));
+    }
+
+    @Test
+    public void testKeystreamCache() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "III", "IV", "I");
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        mach.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        String msg = UPPER_STRING + UPPER_STRING + UPPER_STRING;
+        mach.setRotors("AXLE");
+        String expected = mach.convert(msg);
+        for (long limit : new long[] {1 << 20, 26 * 10}) {
+            mach.setCacheLimit(limit);
+            for (int x = 0; x < 2; x += 1) {
+                mach.setRotors("AXLE");
+                assertEquals(expected, mach.convert(msg));
+            }
+        }
+        mach.setCacheLimit(1 << 20);
+        mach.setRotors("AXLE");
+        mach.convert(msg);
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("", UPPER));
+        mach.setCacheLimit(0);
+        String plain = mach.convert(msg);
+        mach.setCacheLimit(1 << 20);
+        mach.setRotors("AXLE");
+        assertEquals(plain, mach.convert(msg));
+    }
+
+    @Test
+    public void testConvertVector() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "III", "IV", "I");
+        Rotor[] moving = {allRotors.get(2), allRotors.get(3),
+                          allRotors.get(4)};
+        Machine mach = new Machine(UPPER, 5, 3, allRotors);
+        mach.insertRotors(new String[] {"B", "BETA", "III", "IV", "I"});
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        StringBuilder msg = new StringBuilder();
+        for (int x = 0; x < 3 * Machine.VECTOR_BLOCK + 7; x += 1) {
+            msg.append(UPPER_STRING.charAt((x * 11 + x / 3) % 26));
+        }
+        mach.setRotors("AXLE");
+        String expected = mach.convert(msg.toString());
+        String endSetting = getSetting(UPPER, moving);
+
+        mach.setRotors("AXLE");
+        char[] out = new char[msg.length()];
+        int n = mach.convertVector(msg, out, 0);
+        assertEquals(expected, new String(out, 0, n));
+        assertEquals(endSetting, getSetting(UPPER, moving));
+    }
+
+    @Test
+    public void testTableAlphabet() {
+        Alphabet digits = new TableAlphabet("0123456789");
+        ArrayList<Rotor> allRotors = new ArrayList<>();
+        allRotors.add(new Reflector("R",
+                new Permutation("(05) (16) (27) (38) (49)", digits)));
+        allRotors.add(new MovingRotor("M",
+                new Permutation("(0123456789)", digits), "9"));
+        Machine mach = new Machine(digits, 2, 1, allRotors);
+        mach.insertRotors(new String[] {"R", "M"});
+        mach.setRotors("0");
+        String msg = "31415926";
+        String code = mach.convert(msg);
+        mach.setRotors("0");
+        assertEquals(msg, mach.convert(code));
+    }
+
+    @Test
+    public void testSupplementaryAlphabet() throws IOException {
+        Machine mach = new Machine(DESERET, 2, 1, deseretRotors());
+        mach.insertRotors(new String[] {"R", "M"});
+        String start = new String(Character.toChars(0x10401));
+        mach.setRotors(start);
+        String upper = DESERET_STRING.substring(0, 24);
+        String code = mach.convert(upper);
+        assertEquals(24, code.length());
+        assertEquals(12, code.codePointCount(0, code.length()));
+        mach.setRotors(start);
+        assertEquals(code, mach.convert(upper.toLowerCase()));
+        mach.setRotors(start);
+        assertEquals(upper, mach.convert(code));
+
+        StringWriter out = new StringWriter();
+        Main.printMessageLine(out, code.toCharArray(), code.length());
+        assertEquals(code.substring(0, 10) + " " + code.substring(10, 20)
+                + " " + code.substring(20), out.toString());
+    }
+
     /** Helper method to get the String representation of the current
      * Rotor settings */
     private String getSetting(Alphabet alph, Rotor[] machineRotors) {
@@ -1,8 +1,20 @@
 package enigma;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -10,6 +22,7 @@ import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 import static enigma.EnigmaException.*;
+import static java.nio.file.StandardOpenOption.*;
 
 /** Enigma simulator.
  *  @author Michaela Warady
@@ -26,6 +39,25 @@ public final class Main {
      * file for processed messages.  Otherwise, output goes to the
      * standard output. Exits normally if there are no errors in the input;
      * otherwise with code 1.
+     * Alternatively, ARGS may start with a flag selecting another mode:
+     *   "-m" followed by configuration, input and output file names:
+     *     the input file is memory-mapped and processed as ASCII bytes
+     *     (see processMapped).
+     *   "-s" followed by a configuration file name, an address (a
+     *     loopback port number or Unix-domain socket path), and
+     *     optionally limits on connections and queued requests: Main runs
+     *     as a server converting messages for clients (see Server) until
+     *     killed.
+     *   "-p" followed by a configuration file name and a settings line
+     *     (as one argument or several): Main prints the period of the
+     *     machine's rotor settings from those settings and the length of
+     *     the prefix before they enter their cycle, in characters (see
+     *     RotorCycle).
+     * In every mode, if the system property enigma.configCache names a
+     * directory, the configuration is compiled into it on first use and
+     * loaded from there afterwards (see loadConfig), and if the system
+     * property enigma.metrics is set, the machine's metrics are published
+     * over JMX (see MachineMetrics).
      */
     public static void main(String... args) {
         try {
@@ -41,25 +73,79 @@ public final class Main {
      * Check ARGS and open the necessary files (see comment on main).
      */
     Main(String[] args) {
+        if (args.length > 0 && args[0].equals(SERVER_FLAG)) {
+            if (args.length < 3 || args.length > 5) {
+                throw error("%s requires configuration file and address, "
+                        + "and optionally connection and queue limits",
+                        SERVER_FLAG);
+            }
+            _configName = args[1];
+            _config = getInput(args[1]);
+            _serverAddress = args[2];
+            _maxConnections = args.length > 3 ? parseLimit(args[3])
+                : DEFAULT_CONNECTIONS;
+            _queueDepth = args.length > 4 ? parseLimit(args[4])
+                : DEFAULT_QUEUE_DEPTH;
+            return;
+        }
+        if (args.length > 0 && args[0].equals(CYCLE_FLAG)) {
+            if (args.length < 3 || !args[2].startsWith("*")) {
+                throw error("%s requires configuration file and settings "
+                        + "line", CYCLE_FLAG);
+            }
+            _configName = args[1];
+            _config = getInput(args[1]);
+            _cycleSettings = String.join(" ",
+                    Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals(MAPPED_FLAG)) {
+            if (args.length != 4) {
+                throw error("%s requires configuration, input and output "
+                        + "files", MAPPED_FLAG);
+            }
+            _configName = args[1];
+            _config = getInput(args[1]);
+            _inputName = args[2];
+            _outputName = args[3];
+            return;
+        }
+
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
+        _configName = args[0];
         _config = getInput(args[0]);
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = getReader(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new BufferedReader(new InputStreamReader(System.in),
+                    BUFFER_SIZE);
         }
 
         if (args.length > 2) {
             _output = getOutput(args[2]);
         } else {
-            _output = System.out;
+            _output = new BufferedWriter(new OutputStreamWriter(System.out),
+                    BUFFER_SIZE);
         }
     }
 
+    /** Return the non-negative limit written as NUMERAL. */
+    private static int parseLimit(String numeral) {
+        try {
+            int limit = Integer.parseInt(numeral);
+            if (limit >= 0) {
+                return limit;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw error("bad limit: %s", numeral);
+    }
+
     /**
      * Return a Scanner reading from the file named NAME.
      */
@@ -72,11 +158,22 @@ public final class Main {
     }
 
     /**
-     * Return a PrintStream writing to the file named NAME.
+     * Return a buffered Reader reading from the file named NAME.
      */
-    private PrintStream getOutput(String name) {
+    private BufferedReader getReader(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new BufferedReader(new FileReader(name), BUFFER_SIZE);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /**
+     * Return a buffered Writer writing to the file named NAME.
+     */
+    private Writer getOutput(String name) {
+        try {
+            return new BufferedWriter(new FileWriter(name), BUFFER_SIZE);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -85,41 +182,403 @@ public final class Main {
     /**
      * Configure an Enigma machine from the contents of configuration
      * file _config and apply it to the messages in _input, sending the
-     * results to _output.
+     * results to _output.  Input is handled one line at a time, so memory
+     * use does not grow with the length of the input.
      */
     private void process() {
-        Machine mach = readConfig();
-        ArrayList<String> lines = new ArrayList<String>();
-        while (_input.hasNext()) {
-            lines.add(_input.nextLine());
-        }
-        for (int x = 0; x < lines.size(); x += 1) {
-            if (!lines.get(0).startsWith("*")) {
-                throw new EnigmaException("File must start with settings.");
-            }
-            if (lines.get(x).equals("")) {
-                this._output.print("\n");
-            } else if (lines.get(x).startsWith("*")) {
-                setUp(mach, lines.get(x));
+        Machine mach = loadConfig();
+        String metricsName = System.getProperty(METRICS_PROPERTY);
+        if (metricsName != null) {
+            MachineMetrics metrics = new MachineMetrics(mach.numRotors());
+            metrics.register(metricsName.isEmpty() ? "main" : metricsName);
+            mach.setMetrics(metrics);
+        }
+        if (_serverAddress != null) {
+            serve(mach);
+            return;
+        }
+        if (_cycleSettings != null) {
+            setUp(mach, _cycleSettings);
+            RotorCycle cycle = mach.cycle();
+            System.out.printf("period %d%nprefix %d%n", cycle.period(),
+                    cycle.prefix());
+            return;
+        }
+        if (_inputName != null) {
+            processMapped(mach);
+            return;
+        }
+        try {
+            try {
+                ArrayList<String> blanks = new ArrayList<String>();
+                String line;
+                while ((line = _input.readLine()) != null) {
+                    if (isBlank(line)) {
+                        blanks.add(line);
+                        continue;
+                    }
+                    for (String blank : blanks) {
+                        processLine(mach, blank);
+                    }
+                    blanks.clear();
+                    processLine(mach, line);
+                }
+            } finally {
+                _output.flush();
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+    /** Serve requests to convert messages with machines like MACH at
+     *  _serverAddress until killed (see Server).  The server is closed on
+     *  the way out, so that a Unix-domain socket file is removed. */
+    private void serve(Machine mach) {
+        try {
+            Server server = new Server(new MachineTemplate(mach),
+                                       Server.address(_serverAddress),
+                                       _maxConnections, _queueDepth);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException excp) {
+                    /* Exiting anyway. */
+                }
+            }));
+            server.serve();
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+    /** Return true iff LINE contains only whitespace.  Such lines are
+     *  held back until a later non-blank line arrives, so that trailing
+     *  blank lines at the end of the input are ignored. */
+    private static boolean isBlank(String line) {
+        for (int x = 0; x < line.length(); x += 1) {
+            if (!Character.isWhitespace(line.charAt(x))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Apply the single input LINE to MACH, writing any result to
+     *  _output. */
+    private void processLine(Machine mach, String line) throws IOException {
+        if (!_started && !line.startsWith("*")) {
+            throw new EnigmaException("File must start with settings.");
+        }
+        _started = true;
+        if (line.equals("")) {
+            this._output.write('\n');
+        } else if (line.startsWith("*")) {
+            setUp(mach, line);
+        } else {
+            int size = line.length() * mach.getAlphabet().maxCharCount();
+            if (_message.length < size) {
+                _message = new char[Math.max(size, 2 * _message.length)];
+            }
+            Events.MessageLine event = Events.messageLine();
+            int n;
+            if (Events.tracing()) {
+                char[] msg = line.toCharArray();
+                n = convertTraced(mach, msg, msg.length, _message);
+            } else {
+                n = mach.convertParallel(line, _message, 0);
+            }
+            printMessageLine(_output, _message, n);
+            this._output.write('\n');
+            if (event != null) {
+                event.input = line.length();
+                event.converted = n;
+                event.commit();
+            }
+        }
+    }
+
+    /** Convert the first LEN chars of MSG with MACH into OUT, which may
+     *  be MSG, as for Machine.convert(char[], int, int, char[], int), but
+     *  one character at a time, recording a CharacterTrace event for
+     *  each.  A character outside the Basic Multilingual Plane is
+     *  recorded by its first char.  Returns the number of chars
+     *  written. */
+    private static int convertTraced(Machine mach, char[] msg, int len,
+                                     char[] out) {
+        int k = 0;
+        int a = 0;
+        while (a < len) {
+            Events.CharacterTrace event = Events.characterTrace();
+            char c = msg[a];
+            int width = Character.charCount(Character.codePointAt(msg, a,
+                                                                  len));
+            int n = mach.convert(msg, a, width, out, k);
+            if (n > 0) {
+                if (event != null) {
+                    event.input = c;
+                    event.output = out[k];
+                    event.commit();
+                }
+                k += n;
+            }
+            a += width;
+        }
+        return k;
+    }
+
+    /**
+     * Apply MACH to the messages in the file _inputName, writing the
+     * results to the file _outputName.  The input is memory-mapped in
+     * windows of MAP_WINDOW bytes and read as ASCII, message characters
+     * are converted in place in _message, and output is gathered in a
+     * direct buffer written straight to the output channel.  Settings
+     * lines, blank lines and grouping behave as in process(), except that
+     * a message line longer than _message that contains a bad character
+     * may have its leading part written before the error is reported.
+     */
+    private void processMapped(Machine mach) {
+        Alphabet alpha = mach.getAlphabet();
+        for (int x = 0; x < alpha.size(); x += 1) {
+            if (alpha.codePointAt(x) > MAX_ASCII) {
+                throw error("memory-mapped mode requires an ASCII alphabet");
+            }
+        }
+        try (FileChannel in = FileChannel.open(Paths.get(_inputName), READ);
+             FileChannel out = FileChannel.open(Paths.get(_outputName),
+                     WRITE, CREATE, TRUNCATE_EXISTING)) {
+            _outChannel = out;
+            _outBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            try {
+                long size = in.size();
+                for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+                    MappedByteBuffer window =
+                        in.map(FileChannel.MapMode.READ_ONLY, pos,
+                                Math.min(MAP_WINDOW, size - pos));
+                    while (window.hasRemaining()) {
+                        acceptByte(mach, window.get());
+                    }
+                }
+                endMappedLine(mach);
+            } finally {
+                flushMapped();
+            }
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+    /** Feed the input byte B to the line state machine of
+     *  processMapped, applying completed lines to MACH. */
+    private void acceptByte(Machine mach, byte b) throws IOException {
+        char c = (char) (b & 0xff);
+        if (c == '\n' && _afterReturn) {
+            _afterReturn = false;
+            return;
+        }
+        _afterReturn = c == '\r';
+        if (c == '\n' || c == '\r') {
+            endMappedLine(mach);
+            return;
+        }
+        switch (_lineState) {
+        case LINE_START:
+            if (c == '*') {
+                flushBlanks(mach);
+                _started = true;
+                _settings.setLength(0);
+                _settings.append(c);
+                _lineState = IN_SETTINGS;
+            } else if (Character.isWhitespace(c)) {
+                noteBlankChar(c);
+                _lineState = IN_BLANK;
+            } else {
+                startMessage(mach, c);
+            }
+            break;
+        case IN_BLANK:
+            if (Character.isWhitespace(c)) {
+                noteBlankChar(c);
+            } else {
+                startMessage(mach, c);
+            }
+            break;
+        case IN_SETTINGS:
+            _settings.append(c);
+            break;
+        default:
+            if (c != ' ' && c != '\t') {
+                _message[_messageLength] = c;
+                _messageLength += 1;
+                if (_messageLength == _message.length) {
+                    flushMessage(mach);
+                }
+            }
+            break;
+        }
+    }
+
+    /** Record the whitespace character C of a line that is blank so far,
+     *  remembering the first one that Machine.convert would reject. */
+    private void noteBlankChar(char c) {
+        if (c != ' ' && c != '\t' && _lineBadChar == 0) {
+            _lineBadChar = c;
+        }
+    }
+
+    /** Begin a message line whose first non-blank character is C,
+     *  converting with MACH. */
+    private void startMessage(Machine mach, char c) throws IOException {
+        flushBlanks(mach);
+        if (!_started) {
+            throw new EnigmaException("File must start with settings.");
+        }
+        _lineState = IN_MESSAGE;
+        _group = 0;
+        _messageLength = 0;
+        _lineEvent = Events.messageLine();
+        if (_lineBadChar != 0) {
+            _message[_messageLength] = _lineBadChar;
+            _messageLength += 1;
+        }
+        _message[_messageLength] = c;
+        _messageLength += 1;
+    }
+
+    /** Finish the current line of processMapped, applying it to MACH. */
+    private void endMappedLine(Machine mach) throws IOException {
+        switch (_lineState) {
+        case LINE_START: case IN_BLANK:
+            if (_lineBadChar != 0 && _badBlank < 0) {
+                _badBlank = _pendingBlanks;
+                _badBlankChar = _lineBadChar;
+            }
+            _pendingBlanks += 1;
+            break;
+        case IN_SETTINGS:
+            setUp(mach, _settings.toString());
+            break;
+        default:
+            flushMessage(mach);
+            putByte('\n');
+            if (_lineEvent != null) {
+                _lineEvent.commit();
+            }
+            break;
+        }
+        _lineState = LINE_START;
+        _lineBadChar = 0;
+    }
+
+    /** Write out the blank lines held back since the last non-blank line,
+     *  now that another non-blank line has arrived.  MACH supplies the
+     *  alphabet that rejects non-blank whitespace. */
+    private void flushBlanks(Machine mach) throws IOException {
+        if (_pendingBlanks > 0 && !_started) {
+            throw new EnigmaException("File must start with settings.");
+        }
+        for (int x = 0; x < _pendingBlanks; x += 1) {
+            if (x == _badBlank) {
+                mach.getAlphabet().toInt(_badBlankChar);
+            }
+            putByte('\n');
+        }
+        _pendingBlanks = 0;
+        _badBlank = -1;
+    }
+
+    /** Convert the characters collected in _message with MACH and write
+     *  them in groups of five, continuing the current line's grouping. */
+    private void flushMessage(Machine mach) throws IOException {
+        int n;
+        if (Events.tracing()) {
+            n = convertTraced(mach, _message, _messageLength, _message);
+        } else {
+            n = mach.convert(_message, 0, _messageLength, _message, 0);
+        }
+        if (_lineEvent != null) {
+            _lineEvent.input += _messageLength;
+            _lineEvent.converted += n;
+        }
+        for (int x = 0; x < n; x += 1) {
+            char c = _message[x];
+            putByte(c);
+            if (c == '\n') {
+                _group = 0;
             } else {
-                String mess = mach.convert(lines.get(x));
-                printMessageLine(mess);
-                this._output.print("\n");
+                _group += 1;
+                if (_group == 5) {
+                    putByte(' ');
+                    _group = 0;
+                }
             }
         }
+        _messageLength = 0;
+    }
+
+    /** Append the ASCII character C to the mapped-mode output. */
+    private void putByte(char c) throws IOException {
+        if (!_outBuffer.hasRemaining()) {
+            flushMapped();
+        }
+        _outBuffer.put((byte) c);
+    }
+
+    /** Write everything in _outBuffer to _outChannel. */
+    private void flushMapped() throws IOException {
+        _outBuffer.flip();
+        while (_outBuffer.hasRemaining()) {
+            _outChannel.write(_outBuffer);
+        }
+        _outBuffer.clear();
+    }
+
+    /** Return an Enigma machine configured from configuration file
+     *  _configName.  If the system property CACHE_PROPERTY names a
+     *  directory, the machine is built from the compiled form of the file
+     *  kept there (see CompiledConfig) when that form matches the file's
+     *  current contents; otherwise the file is parsed and its compiled form
+     *  written there for next time. */
+    private Machine loadConfig() {
+        String dir = System.getProperty(CACHE_PROPERTY);
+        if (dir == null) {
+            return readConfig();
+        }
+        byte[] source;
+        try {
+            source = Files.readAllBytes(Paths.get(_configName));
+        } catch (IOException excp) {
+            throw error("could not open %s", _configName);
+        }
+        File compiled = CompiledConfig.cacheFile(dir, _configName);
+        Events.ConfigRead event = Events.configRead();
+        Machine mach = CompiledConfig.read(compiled, source);
+        if (mach != null) {
+            if (event != null) {
+                event.file = _configName;
+                event.bytes = source.length;
+                event.rotors = mach.allRotors().size();
+                event.compiled = true;
+                event.commit();
+            }
+        } else {
+            _config = new Scanner(new String(source));
+            mach = readConfig();
+            CompiledConfig.write(mach, source, compiled);
+        }
+        return mach;
     }
 
     /** Return an Enigma machine configured from the contents of configuration
      *  file _config. */
-    private Machine readConfig() {
+    Machine readConfig() {
+        Events.ConfigRead event = Events.configRead();
         try {
             ArrayList<String> lines = new ArrayList<String>();
             while (_config.hasNext()) {
                 lines.add(_config.nextLine());
             }
-            String[] alph = lines.get(0).split("-");
-            _alphabet = new CharacterRange(alph[0].charAt(0),
-                    alph[1].charAt(0));
+            _alphabet = readAlphabet(lines.get(0));
             while (Character.toString(lines.get(1).charAt(0)).equals(" ")) {
                 lines.set(1, lines.get(1).substring(1));
             }
@@ -145,15 +604,57 @@ public final class Main {
                     rots.add(readRotor(rstring));
                 }
             }
-            return new Machine(_alphabet, nrotors, npawls, rots);
+            Machine mach = new Machine(_alphabet, nrotors, npawls, rots);
+            if (event != null) {
+                event.file = _configName;
+                for (String line : lines) {
+                    event.bytes += line.length() + 1;
+                }
+                event.rotors = rots.size();
+                event.commit();
+            }
+            return mach;
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
         }
     }
 
+    /** Return the alphabet described by LINE, the first line of a
+     *  configuration.  A line of the form C1-C2 describes the characters
+     *  from C1 to C2, as a CharacterRange.  Otherwise, the line lists the
+     *  characters of a TableAlphabet in order, any of them in the form
+     *  C1-C2 standing for a whole range, so that 0-9A-Z gives the digits
+     *  followed by the letters.  Characters outside the Basic
+     *  Multilingual Plane are allowed, and always give a TableAlphabet.
+     *  Whitespace in the line is ignored. */
+    private static Alphabet readAlphabet(String line) {
+        int[] spec = line.replaceAll("\\s", "").codePoints().toArray();
+        if (spec.length == 3 && spec[1] == '-'
+            && spec[0] <= Character.MAX_VALUE
+            && spec[2] <= Character.MAX_VALUE) {
+            return new CharacterRange((char) spec[0], (char) spec[2]);
+        }
+        StringBuilder chars = new StringBuilder();
+        for (int x = 0; x < spec.length; x += 1) {
+            if (x + 2 < spec.length && spec[x + 1] == '-') {
+                if (spec[x + 2] < spec[x]) {
+                    throw error("empty range of characters");
+                }
+                for (int c = spec[x]; c <= spec[x + 2]; c += 1) {
+                    chars.appendCodePoint(c);
+                }
+                x += 2;
+            } else {
+                chars.appendCodePoint(spec[x]);
+            }
+        }
+        return new TableAlphabet(chars.toString());
+    }
+
     /** Return a rotor, reading its description from _config.
      * @param rstring string of rotors.*/
     private Rotor readRotor(String rstring) {
+        Events.RotorRead event = Events.rotorRead();
         try {
             String[] split = rstring.split(" ");
             String name = split[0];
@@ -164,61 +665,75 @@ public final class Main {
                 perms = perms + " " + split[x];
             }
             Permutation p = new Permutation(perms, _alphabet);
+            Rotor result;
             if (type.equals("N")) {
-                FixedRotor fix = new FixedRotor(name, p);
-                return fix;
+                result = new FixedRotor(name, p);
             } else if (type.equals("M")) {
-                MovingRotor move = new MovingRotor(name, p, notches);
-                return move;
+                result = new MovingRotor(name, p, notches);
             } else if (type.equals("R")) {
-                Reflector reflec = new Reflector(name, p);
-                return reflec;
+                result = new Reflector(name, p);
             } else {
                 throw new EnigmaException(
                         "Rotor type not moving, fixed or reflector.");
             }
+            if (event != null) {
+                event.name = name;
+                event.type = split[1];
+                event.length = rstring.length();
+                event.commit();
+            }
+            return result;
         } catch (NoSuchElementException excp) {
             throw error("bad rotor description");
         }
     }
 
     /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
+     *  which must have the format specified in the assignment.  The
+     *  plugboard is replaced by the one SETTINGS describes, so a line
+     *  naming no plugboard pairs leaves none from an earlier line. */
     private void setUp(Machine M, String settings) {
+        Events.SettingsLine event = Events.settingsLine();
         String[] sets = settings.split(" ");
         M.insertRotors(Arrays.copyOfRange(sets, 1, M.numRotors() + 1));
         M.setRotors(sets[M.numRotors() + 1]);
-        if (sets.length > M.numRotors() + 1) {
-            String[] plugs = Arrays.copyOfRange(sets,
-                    M.numRotors() + 1, sets.length);
-            String perms = "";
-            for (int x = 0; x < plugs.length; x += 1) {
-                perms = perms + plugs[x] + " ";
-            }
-            Permutation plugperm = new Permutation(perms, M.getAlphabet());
-            M.setPlugboard(plugperm);
+        String perms = "";
+        for (int x = M.numRotors() + 2; x < sets.length; x += 1) {
+            perms = perms + sets[x] + " ";
+        }
+        Permutation plugperm = new Permutation(perms, M.getAlphabet());
+        M.setPlugboard(plugperm);
+        if (event != null) {
+            event.cycles = (int) perms.chars().filter(c -> c == '(').count();
+            event.line = settings;
+            event.commit();
         }
-
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        if (msg.length() < 5) {
-            this._output.print(msg);
-        } else {
-            if (msg.substring(0, 5).contains("\n")) {
-                for (int x = 0; x < 5; x += 1) {
-                    if (Character.toString(msg.charAt(x)).equals("\n")) {
-                        this._output.print(msg.substring(0, x));
-                        this._output.print("\n");
-                        printMessageLine(msg.substring(x + 1));
-                        break;
-                    }
-                }
+    /** Print the first LEN chars of MSG on OUT in groups of five
+     *  characters (except that the last group may have fewer letters),
+     *  counting a surrogate pair as one character.  A newline within a
+     *  group ends it and starts a fresh group. */
+    static void printMessageLine(Writer out, char[] msg, int len)
+        throws IOException {
+        int x = 0;
+        while (x < len) {
+            int y = x;
+            int count = 0;
+            while (count < 5 && y < len && msg[y] != '\n') {
+                y += Character.isHighSurrogate(msg[y]) && y + 1 < len
+                    && Character.isLowSurrogate(msg[y + 1]) ? 2 : 1;
+                count += 1;
+            }
+            out.write(msg, x, y - x);
+            if (count == 5) {
+                out.write(' ');
+                x = y;
+            } else if (y < len) {
+                out.write('\n');
+                x = y + 1;
             } else {
-                this._output.print(msg.substring(0, 5) + " ");
-                printMessageLine(msg.substring(5));
+                x = y;
             }
         }
     }
@@ -226,12 +741,107 @@ public final class Main {
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
+    /** System property naming the directory of compiled configurations. */
+    static final String CACHE_PROPERTY = "enigma.configCache";
+
+    /** System property that, when set, turns on metrics for the machine,
+     *  published over JMX under its value as name (see MachineMetrics). */
+    static final String METRICS_PROPERTY = "enigma.metrics";
+
+    /** Name of the configuration file. */
+    private String _configName;
+
+    /** First argument selecting server mode. */
+    private static final String SERVER_FLAG = "-s";
+
+    /** Default limits on connections and queued requests in server
+     *  mode. */
+    private static final int DEFAULT_CONNECTIONS = 64,
+        DEFAULT_QUEUE_DEPTH = 256;
+
+    /** Address to serve at in server mode, or null. */
+    private String _serverAddress;
+
+    /** Limits on connections and queued requests in server mode. */
+    private int _maxConnections, _queueDepth;
+
+    /** Size of the character buffers used for input and output. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** First argument selecting the report of a machine's period. */
+    private static final String CYCLE_FLAG = "-p";
+
+    /** Settings line whose period is reported, or null. */
+    private String _cycleSettings;
+
+    /** Command-line flag selecting memory-mapped processing. */
+    private static final String MAPPED_FLAG = "-m";
+
+    /** Size in bytes of each memory-mapped window of the input. */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    /** Largest character value accepted in memory-mapped mode. */
+    private static final char MAX_ASCII = 127;
+
+    /** States of the memory-mapped line reader: at the start of a line,
+     *  in a line that is blank so far, in a settings line, and in a
+     *  message line. */
+    private static final int LINE_START = 0, IN_BLANK = 1, IN_SETTINGS = 2,
+        IN_MESSAGE = 3;
+
     /** Source of input messages. */
-    private Scanner _input;
+    private BufferedReader _input;
 
     /** Source of machine configuration. */
     private Scanner _config;
 
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private Writer _output;
+
+    /** True once the first (settings) line of _input has been handled. */
+    private boolean _started;
+
+    /** Reusable buffer holding the converted current message line. */
+    private char[] _message = new char[BUFFER_SIZE];
+
+    /** Input and output file names in memory-mapped mode, else null. */
+    private String _inputName, _outputName;
+
+    /** Channel receiving output in memory-mapped mode. */
+    private FileChannel _outChannel;
+
+    /** Direct buffer of pending output in memory-mapped mode. */
+    private ByteBuffer _outBuffer;
+
+    /** Current state of the memory-mapped line reader. */
+    private int _lineState = LINE_START;
+
+    /** True iff the previous input byte was a carriage return. */
+    private boolean _afterReturn;
+
+    /** Text of the settings line being read in memory-mapped mode. */
+    private StringBuilder _settings = new StringBuilder();
+
+    /** Event timing the current message line in memory-mapped mode. */
+    private Events.MessageLine _lineEvent;
+
+    /** Number of characters collected in _message in memory-mapped mode. */
+    private int _messageLength;
+
+    /** Number of characters in the current output group. */
+    private int _group;
+
+    /** Number of blank lines held back in memory-mapped mode. */
+    private int _pendingBlanks;
+
+    /** Index among the held-back blank lines of the first containing a
+     *  character other than blank or tab, or -1. */
+    private int _badBlank = -1;
+
+    /** The offending character of blank line _badBlank. */
+    private char _badBlankChar;
+
+    /** First character other than blank or tab in the current blank-so-far
+     *  line, or 0. */
+    private char _lineBadChar;
 }
@@ -1,9 +1,11 @@
 package enigma;
 
-import java.util.HashMap;
-
-
-/** Class that represents a rotating rotor in the enigma machine.
+/** Class that represents a rotating rotor in the enigma machine.  Its
+ *  notches are compiled into a bit mask indexed by setting, so that
+ *  checking for a notch is a single bit test, into a table of the
+ *  distance from each setting to the next notch, by which a Stepper
+ *  skips to the next turnover, and into a table of the number of notches
+ *  below each setting, by which it counts the notches a rotor passes.
  *  @author Michaela Warady
  */
 class MovingRotor extends Rotor {
@@ -17,21 +19,61 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation permu, String notches) {
         super(name, permu);
         this.perm = permu;
-        this._notches = new HashMap<Integer, String>();
-        for (int x = 0; x < notches.length(); x += 1) {
-            this._notches.put(this._notches.size(),
-                    Character.toString(notches.charAt(x)));
+        this._notches = notches;
+        int n = size();
+        this._notchBits = new long[(n + Long.SIZE - 1) / Long.SIZE];
+        int x = 0;
+        while (x < notches.length()) {
+            int c = notches.codePointAt(x);
+            int posn = perm.getAlphabet().indexOfCodePoint(c);
+            if (posn >= 0) {
+                this._notchBits[posn / Long.SIZE] |= 1L << posn;
+            }
+            x += Character.charCount(c);
+        }
+        this._toNotch = new int[n];
+        int d = -1;
+        for (int k = 2 * n - 1; k >= 0; k -= 1) {
+            if (notchAt(k % n)) {
+                d = 0;
+            } else if (d >= 0) {
+                d += 1;
+            }
+            this._toNotch[k % n] = d;
+        }
+        this._notchesBefore = new int[n + 1];
+        for (int posn = 0; posn < n; posn += 1) {
+            this._notchesBefore[posn + 1] = this._notchesBefore[posn]
+                + (notchAt(posn) ? 1 : 0);
         }
     }
 
 
+    /** Return the characters at which I have notches, in the order
+     *  given to my constructor. */
+    String notches() {
+        return this._notches;
+    }
+
     @Override
     void advance() {
         this.setter();
     }
 
-    /** Holds notches. */
-    private HashMap<Integer, String> _notches;
+    /** Holds notches, as given to my constructor. */
+    private String _notches;
+
+    /** Bit POSN % 64 of _notchBits[POSN / 64] is set iff I have a notch
+     *  at setting POSN. */
+    private final long[] _notchBits;
+
+    /** _toNotch[POSN] is the number of advances from setting POSN to my
+     *  next notch, or -1 if I have none. */
+    private final int[] _toNotch;
+
+    /** _notchesBefore[POSN] is the number of my notches at settings
+     *  below POSN. */
+    private final int[] _notchesBefore;
 
 
     /** The perm. */
@@ -40,8 +82,22 @@ class MovingRotor extends Rotor {
     @Override
     /** Return true if rotor is at notch. */
     boolean atNotch() {
-        return this._notches.containsValue(
-                Character.toString(perm.getAlphabet().toChar(getSetting())));
+        return notchAt(getSetting());
+    }
+
+    @Override
+    boolean notchAt(int posn) {
+        return (this._notchBits[posn / Long.SIZE] & (1L << posn)) != 0;
+    }
+
+    @Override
+    int toNotch(int posn) {
+        return this._toNotch[posn];
+    }
+
+    @Override
+    int notchesBefore(int posn) {
+        return this._notchesBefore[posn];
     }
 
     @Override
@@ -104,6 +104,21 @@ public class MovingRotorTest {
         assertFalse(rotor.atNotch());
     }
 
+    @Test
+    public void checkToNotch() {
+        setRotor("IV", NAVALZ, "CW");
+        assertEquals(2, rotor.toNotch(0));
+        assertEquals(0, rotor.toNotch(2));
+        assertEquals(19, rotor.toNotch(3));
+        assertEquals(0, rotor.toNotch(22));
+        assertEquals(4, rotor.toNotch(24));
+        assertTrue(rotor.notchAt(22));
+        assertFalse(rotor.notchAt(23));
+        setRotor("I", NAVALA, "");
+        assertEquals(-1, rotor.toNotch(5));
+        assertFalse(rotor.atNotch());
+    }
+
     @Test
     public void checkRotorAdvance() {
         setRotor("I", NAVALA, "");
@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 import static enigma.EnigmaException.*;
@@ -18,45 +19,89 @@ class Permutation {
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
         this._cycles = cycles;
-        this._h = new HashMap<String, String>();
-        this._hi = new HashMap<String, String>();
-        if (this._cycles.length() > 0) {
-            String[] strings = this._cycles.split("\\(");
-            for (int x = 1; x < strings.length; x += 1) {
-                addCycle(strings[x]);
+        this._forward = new int[_alphabet.size()];
+        this._inverse = new int[_alphabet.size()];
+        for (int x = 0; x < _forward.length; x += 1) {
+            _forward[x] = -1;
+        }
+        int open = this._cycles.indexOf('(');
+        while (open >= 0) {
+            int close = this._cycles.indexOf(')', open + 1);
+            if (close < 0) {
+                throw new EnigmaException("Cycle is not closed.");
             }
+            addCycle(this._cycles.substring(open + 1, close));
+            open = this._cycles.indexOf('(', close + 1);
         }
-        for (int x = 0; x < _alphabet.size(); x += 1) {
-            if (!_h.containsKey(Character.toString(_alphabet.toChar(x)))) {
-                _h.put(Character.toString(_alphabet.toChar(x)),
-                        Character.toString(_alphabet.toChar(x)));
+        for (int x = 0; x < _forward.length; x += 1) {
+            if (_forward[x] < 0) {
+                _forward[x] = x;
             }
+            _inverse[_forward[x]] = x;
         }
-        _h.forEach((k, v) -> _hi.put(v, k));
+    }
+
+    /** Set this Permutation to the one sending each index i of ALPHABET to
+     *  FORWARD[i], which must be a permutation of 0 .. ALPHABET.size()-1.
+     *  FORWARD is copied. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (forward.length != _alphabet.size()) {
+            throw new EnigmaException("Permutation has wrong size.");
+        }
+        this._forward = forward.clone();
+        this._inverse = new int[_forward.length];
+        Arrays.fill(_inverse, -1);
+        for (int x = 0; x < _forward.length; x += 1) {
+            if (_forward[x] < 0 || _forward[x] >= _forward.length
+                    || _inverse[_forward[x]] >= 0) {
+                throw new EnigmaException("Table is not a permutation.");
+            }
+            _inverse[_forward[x]] = x;
+        }
+        StringBuilder cycles = new StringBuilder();
+        boolean[] seen = new boolean[_forward.length];
+        for (int x = 0; x < _forward.length; x += 1) {
+            if (!seen[x] && _forward[x] != x) {
+                cycles.append(cycles.length() == 0 ? "(" : " (");
+                for (int y = x; !seen[y]; y = _forward[y]) {
+                    seen[y] = true;
+                    cycles.appendCodePoint(_alphabet.codePointAt(y));
+                }
+                cycles.append(')');
+            }
+        }
+        this._cycles = cycles.toString();
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
+     *  c0c1...cm.  Whitespace within CYCLE is ignored. */
     private void addCycle(String cycle) {
-        if (cycle.length() > 0) {
-            for (int x = 0; x < cycle.length(); x += 1) {
-                if (!this._alphabet.contains(cycle.charAt(x))
-                        && !(this._alphabet.contains(cycle.charAt(x + 1))
-                        || Character.toString(cycle.charAt(x + 1)).equals(
-                                ")"))) {
-                    throw new EnigmaException("Character not in alphabet.");
-                }
-                if (x + 1 < cycle.length()) {
-                    if (!Character.toString(cycle.charAt(x + 1)).equals(")")) {
-                        _h.put(Character.toString(cycle.charAt(x)),
-                                Character.toString(cycle.charAt(x + 1)));
-                    } else {
-                        _h.put(Character.toString(cycle.charAt(x)),
-                            Character.toString(cycle.charAt(0)));
-                        break;
-                    }
-                }
+        int first = -1, prev = -1;
+        int x = 0;
+        while (x < cycle.length()) {
+            int c = cycle.codePointAt(x);
+            x += Character.charCount(c);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            int i = this._alphabet.indexOfCodePoint(c);
+            if (i < 0) {
+                throw new EnigmaException("Character not in alphabet.");
+            }
+            if (_forward[i] >= 0 || i == prev) {
+                throw new EnigmaException(
+                        "Character appears twice in permutation.");
             }
+            if (first < 0) {
+                first = i;
+            } else {
+                _forward[prev] = i;
+            }
+            prev = i;
+        }
+        if (first >= 0) {
+            _forward[prev] = first;
         }
     }
 
@@ -77,27 +122,24 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        return _alphabet.toInt(_h.get(Character.
-                toString(_alphabet.toChar(p))).charAt(0)) % size();
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        return wrap(_alphabet.toInt(_hi.get(Character.
-                toString(_alphabet.toChar(c))).charAt(0)));
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        return _alphabet.toChar(
-                this.permute(_alphabet.toInt(p)));
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     int invert(char c) {
-        return (int) _hi.get(Character.toString(c)).charAt(0);
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -109,8 +151,7 @@ class Permutation {
      *  permutation for which no value maps to itself). */
     boolean derangement() {
         for (int x = 0; x < size(); x += 1) {
-            if (_h.get(Character.toString(_alphabet.toChar(x))).
-                    equals(Character.toString(_alphabet.toChar(x)))) {
+            if (_forward[x] == x) {
                 return false;
             }
         }
@@ -120,12 +161,16 @@ class Permutation {
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** The hashmap. */
-    private HashMap<String, String> _h;
+    /** Forward mapping: _forward[i] is the image of index i. */
+    private int[] _forward;
 
-    /** Returns h. */
+    /** Inverse mapping: _inverse[i] is the preimage of index i. */
+    private int[] _inverse;
+
+    /** Returns h, the forward mapping as a fresh map from characters to
+     *  characters. */
     public HashMap getH() {
-        return this._h;
+        return asMap(_forward);
     }
 
     /** Holds cycles. */
@@ -136,12 +181,21 @@ class Permutation {
         return _cycles;
     }
 
-    /** Holds inverse cycles. */
-    private HashMap<String, String> _hi;
-
-    /** Returns hi. */
+    /** Returns hi, the inverse mapping as a fresh map from characters to
+     *  characters. */
     public HashMap getHi() {
-        return this._hi;
+        return asMap(_inverse);
+    }
+
+    /** Return TABLE as a map from each character of my alphabet to the
+     *  character it is sent to. */
+    private HashMap<String, String> asMap(int[] table) {
+        HashMap<String, String> result = new HashMap<String, String>();
+        for (int x = 0; x < table.length; x += 1) {
+            result.put(Character.toString(_alphabet.toChar(x)),
+                    Character.toString(_alphabet.toChar(table[x])));
+        }
+        return result;
     }
 
     /** Returns alphabet. */
@@ -4,6 +4,8 @@ import org.junit.Test;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
 
+import java.util.Locale;
+
 import static org.junit.Assert.*;
 
 import static enigma.TestUtils.*;
@@ -77,6 +79,118 @@ public class PermutationTest {
 
     }
 
+    @Test
+    public void checkInverseMapping() {
+        perm = new Permutation("(TDMKL) (X) (OW) (QSAFHZ)", UPPER);
+        assertEquals("{A=S, B=B, C=C, D=T, E=E, F=A, G=G, H=F, I=I, J=J, K=M,"
+                + " L=K, M=D, N=N, O=W, P=P, Q=Z, R=R, S=Q, T=L, U=U, V=V, "
+                + "W=O, X=X, Y=Y, Z=H}", perm.getHi().toString());
+    }
+
+    @Test
+    public void checkFromTable() {
+        Permutation cycles = new Permutation("(TDMKL) (OW) (QSAFHZ)", UPPER);
+        int[] table = new int[26];
+        for (int x = 0; x < 26; x += 1) {
+            table[x] = cycles.permute(x);
+        }
+        perm = new Permutation(table, UPPER);
+        assertEquals(cycles.getH(), perm.getH());
+        assertEquals(cycles.getHi(), perm.getHi());
+        assertEquals("(AFHZQS) (DMKLT) (OW)", perm.getCycles());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTableNotPermutation() {
+        int[] table = new int[26];
+        perm = new Permutation(table, UPPER);
+    }
+
+    @Test
+    public void checkTableAlphabet() {
+        Alphabet alph = new TableAlphabet("0123456789abcxyz");
+        assertEquals(16, alph.size());
+        assertEquals(10, alph.toInt('A'));
+        assertEquals('Z', alph.toChar(15));
+        assertEquals(-1, alph.indexOf('D'));
+        assertEquals(-1, alph.indexOf('\u00e9'));
+        assertEquals('9', alph.charAt(9));
+        assertFalse(alph.contains('a'));
+        perm = new Permutation("(0A) (9XZ)", alph);
+        assertEquals('A', perm.permute('0'));
+        assertEquals('9', perm.permute('Z'));
+        assertEquals('1', perm.invert('1'));
+    }
+
+    @Test
+    public void checkTableAlphabetUpperCase() {
+        Alphabet sharp = new TableAlphabet("ab\u00df");
+        assertEquals(3, sharp.size());
+        assertEquals(2, sharp.indexOf('\u00df'));
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr"));
+            Alphabet hij = new TableAlphabet("hij");
+            assertEquals(1, hij.indexOf('I'));
+            assertEquals(1, hij.foldedIndexOf('i'));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void checkCaseFolding() {
+        Alphabet greek = new CharacterRange('\u0391', '\u03a9');
+        int sigma = greek.indexOf('\u03a3');
+        assertEquals(sigma, greek.foldedIndexOf('\u03c3'));
+        assertEquals(sigma, greek.foldedIndexOf('\u03c2'));
+        assertEquals(-1, greek.foldedIndexOf('s'));
+        Alphabet ascii = new CharacterRange(' ', '~');
+        assertEquals(ascii.indexOf('A'), ascii.foldedIndexOf('a'));
+        assertEquals(ascii.indexOf('S'), ascii.foldedIndexOf('\u017f'));
+    }
+
+    @Test
+    public void checkLargeRange() {
+        Alphabet wide = new CharacterRange('\u0000', '\u9fff');
+        assertEquals(0x9000, wide.toInt('\u9000'));
+        assertEquals(0x9000, wide.toFoldedInt(0x9000));
+        assertEquals('A', wide.foldedIndexOf('a'));
+        assertEquals(-1, wide.foldedIndexOf(0xa000));
+    }
+
+    @Test
+    public void checkSupplementaryAlphabet() {
+        StringBuilder letters = new StringBuilder();
+        for (int c = 0x10400; c < 0x10428; c += 1) {
+            letters.appendCodePoint(c);
+        }
+        Alphabet deseret = new TableAlphabet(letters.toString());
+        assertEquals(40, deseret.size());
+        assertEquals(2, deseret.maxCharCount());
+        assertEquals(3, deseret.indexOfCodePoint(0x10403));
+        assertEquals(3, deseret.foldedIndexOf(0x1042b));
+        assertEquals(-1, deseret.indexOfCodePoint('A'));
+        perm = new Permutation("(" + new String(Character.toChars(0x10400))
+                + new String(Character.toChars(0x10427)) + ")", deseret);
+        assertEquals(39, perm.permute(0));
+        assertEquals("(\ud801\udc00\ud801\udc27)",
+                new Permutation(new int[] {39, 1, 2, 3, 4, 5, 6, 7, 8, 9,
+                    10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23,
+                    24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 37,
+                    38, 0}, deseret).getCycles());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTableAlphabetRepeated() {
+        new TableAlphabet("ABCa");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedCharacter() {
+        perm = new Permutation("(ABCA)", UPPER);
+    }
+
     @Test
     public void checkSize() {
         Alphabet alph = new CharacterRange('A', 'Z');
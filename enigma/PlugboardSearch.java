@@ -0,0 +1,398 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** A hill-climbing search for the plugboard of a machine whose rotors
+ *  and their settings are known, given a ciphertext.  The permutation
+ *  applied by the rotors and reflector at each ciphertext position is
+ *  computed once; the plugboard is kept as an int[] involution, and
+ *  changing it rescores only the positions whose decryption the change
+ *  affects, without touching the rotors.
+ *  @author Michaela Warady
+ */
+class PlugboardSearch {
+
+    /** A search for the plugboard of TEMPLATE with the rotors named
+     *  ROTORS at setting SETTING that best decrypts CIPHERTEXT, whose
+     *  blanks and tabs are ignored.  Starts with an empty plugboard. */
+    PlugboardSearch(MachineTemplate template, String[] rotors,
+                    String setting, String ciphertext) {
+        _alphabet = template.alphabet();
+        _size = _alphabet.size();
+        _cipher = ciphertext.replace(" ", "").replace("\t", "")
+            .codePoints().toArray();
+        int len = _cipher.length;
+        _cores = new int[len * _size];
+        MachineInstance mach = template.instance(rotors, setting,
+                new Permutation("", _alphabet));
+        int[] letterCounts = new int[_size];
+        for (int i = 0; i < len; i += 1) {
+            _cipher[i] = _alphabet.toFoldedInt(_cipher[i]);
+            letterCounts[_cipher[i]] += 1;
+            mach.advance();
+            for (int x = 0; x < _size; x += 1) {
+                _cores[i * _size + x] = mach.convertUnmoved(x);
+            }
+        }
+        _inputs = new int[_size][];
+        for (int x = 0; x < _size; x += 1) {
+            _inputs[x] = new int[letterCounts[x]];
+            letterCounts[x] = 0;
+        }
+        for (int i = 0; i < len; i += 1) {
+            _inputs[_cipher[i]][letterCounts[_cipher[i]]] = i;
+            letterCounts[_cipher[i]] += 1;
+        }
+        _plug = new int[_size];
+        _mid = new int[len];
+        _out = new int[len];
+        _bucket = new int[_size][];
+        _bucketSize = new int[_size];
+        _where = new int[len];
+        _counts = new int[_size];
+        _stamp = new int[len];
+        _affected = new int[len];
+        for (int x = 0; x < _size; x += 1) {
+            _plug[x] = x;
+        }
+        for (int i = 0; i < len; i += 1) {
+            _mid[i] = _cores[i * _size + _cipher[i]];
+            _bucketSize[_mid[i]] += 1;
+        }
+        for (int x = 0; x < _size; x += 1) {
+            _bucket[x] = new int[Math.max(MIN_BUCKET, _bucketSize[x])];
+            _bucketSize[x] = 0;
+        }
+        for (int i = 0; i < len; i += 1) {
+            _out[i] = _mid[i];
+            _where[i] = _bucketSize[_mid[i]];
+            _bucket[_mid[i]][_bucketSize[_mid[i]]] = i;
+            _bucketSize[_mid[i]] += 1;
+            count(_out[i], 1);
+        }
+    }
+
+    /** Score by the n-grams of length LENGTH in the decryption rather than
+     *  by index of coincidence, with LOGPROBS as for
+     *  SettingsSearch.setNGrams.  Each score is rounded to a multiple of
+     *  1 / GRAM_SCALE and totals are kept in fixed point, so that
+     *  rescoring after thousands of pair() and undo() calls gives exactly
+     *  the total that scoring the decryption afresh would.  The scores
+     *  must be finite. */
+    void setNGrams(int length, double[] logProbs) {
+        long grams = 1;
+        for (int x = 0; x < length; x += 1) {
+            grams *= _size;
+        }
+        if (logProbs.length != grams) {
+            throw new EnigmaException("Wrong number of n-gram scores.");
+        }
+        long[] scores = new long[logProbs.length];
+        for (int g = 0; g < logProbs.length; g += 1) {
+            if (!Double.isFinite(logProbs[g])) {
+                throw new EnigmaException("N-gram scores must be finite.");
+            }
+            scores[g] = Math.round(logProbs[g] * GRAM_SCALE);
+        }
+        _gramLength = length;
+        _gramScores = scores;
+        _gramStamp = new int[_out.length];
+        _gramTotal = 0;
+        for (int i = 0; i + length <= _out.length; i += 1) {
+            _gramTotal += gramScore(i);
+        }
+    }
+
+    /** Return the score of the current plugboard; higher is better. */
+    double score() {
+        if (_gramScores != null) {
+            return (double) _gramTotal / GRAM_SCALE;
+        }
+        long n = _out.length;
+        return n < 2 ? 0 : (double) _coincidences / (n * (n - 1));
+    }
+
+    /** Return the index that the plugboard currently connects to X. */
+    int partner(int x) {
+        return _plug[x];
+    }
+
+    /** Connect A to B on the plugboard, first disconnecting each from any
+     *  other partner.  If A == B, just disconnect A. */
+    void pair(int a, int b) {
+        _changed = 0;
+        change(_plug[a], _plug[a]);
+        change(_plug[b], _plug[b]);
+        change(a, b);
+        change(b, a);
+        apply();
+    }
+
+    /** Undo the last call to pair. */
+    void undo() {
+        for (int j = 0; j < _changed; j += 1) {
+            _newValues[j] = _oldValues[j];
+        }
+        apply();
+    }
+
+    /** Repeatedly apply whichever single pair() most improves score(),
+     *  until none does, and return the final score. */
+    double climb() {
+        double best = score();
+        while (true) {
+            int bestA = -1, bestB = -1;
+            double bestScore = best;
+            for (int a = 0; a < _size; a += 1) {
+                for (int b = a; b < _size; b += 1) {
+                    if (_plug[a] == b) {
+                        continue;
+                    }
+                    pair(a, b);
+                    if (score() > bestScore) {
+                        bestScore = score();
+                        bestA = a;
+                        bestB = b;
+                    }
+                    undo();
+                }
+            }
+            if (bestA < 0) {
+                return best;
+            }
+            pair(bestA, bestB);
+            best = score();
+        }
+    }
+
+    /** Return the current plugboard as a Permutation. */
+    Permutation plugboard() {
+        StringBuilder cycles = new StringBuilder();
+        for (int x = 0; x < _size; x += 1) {
+            if (_plug[x] > x) {
+                cycles.append('(')
+                    .appendCodePoint(_alphabet.codePointAt(x))
+                    .appendCodePoint(_alphabet.codePointAt(_plug[x]))
+                    .append(") ");
+            }
+        }
+        return new Permutation(cycles.toString(), _alphabet);
+    }
+
+    /** Return the decryption of the ciphertext with the current
+     *  plugboard. */
+    String decryption() {
+        StringBuilder result = new StringBuilder(_out.length);
+        for (int i = 0; i < _out.length; i += 1) {
+            result.appendCodePoint(_alphabet.codePointAt(_out[i]));
+        }
+        return result.toString();
+    }
+
+    /** Record that the plugboard is to send X to Y, unless already
+     *  recorded. */
+    private void change(int x, int y) {
+        for (int j = 0; j < _changed; j += 1) {
+            if (_letters[j] == x) {
+                _newValues[j] = y;
+                return;
+            }
+        }
+        _letters[_changed] = x;
+        _oldValues[_changed] = _plug[x];
+        _newValues[_changed] = y;
+        _changed += 1;
+    }
+
+    /** Set the plugboard entries recorded by change and rescore the
+     *  positions whose decryption depends on them: those whose ciphertext
+     *  letter is changed (their input to the rotors moves) and those
+     *  whose rotor output is a changed letter. */
+    private void apply() {
+        _epoch += 1;
+        int affected = 0;
+        for (int j = 0; j < _changed; j += 1) {
+            int x = _letters[j];
+            for (int i : _inputs[x]) {
+                affected = mark(i, affected);
+            }
+            for (int k = 0; k < _bucketSize[x]; k += 1) {
+                affected = mark(_bucket[x][k], affected);
+            }
+        }
+        if (_gramScores != null) {
+            _epoch += 1;
+            forGrams(affected, -1);
+        }
+        for (int j = 0; j < _changed; j += 1) {
+            _plug[_letters[j]] = _newValues[j];
+        }
+        for (int k = 0; k < affected; k += 1) {
+            int i = _affected[k];
+            count(_out[i], -1);
+            int mid = _cores[i * _size + _plug[_cipher[i]]];
+            if (mid != _mid[i]) {
+                move(i, mid);
+            }
+            _out[i] = _plug[mid];
+            count(_out[i], 1);
+        }
+        if (_gramScores != null) {
+            _epoch += 1;
+            forGrams(affected, 1);
+        }
+    }
+
+    /** Add position I to the first AFFECTED entries of _affected unless
+     *  already there, returning the new number of entries. */
+    private int mark(int i, int affected) {
+        if (_stamp[i] == _epoch) {
+            return affected;
+        }
+        _stamp[i] = _epoch;
+        _affected[affected] = i;
+        return affected + 1;
+    }
+
+    /** Add SIGN times the score of each n-gram covering any of the first
+     *  AFFECTED positions in _affected to _gramTotal, counting each
+     *  n-gram once. */
+    private void forGrams(int affected, int sign) {
+        for (int k = 0; k < affected; k += 1) {
+            int i = _affected[k];
+            int first = Math.max(0, i - _gramLength + 1);
+            int last = Math.min(i, _out.length - _gramLength);
+            for (int g = first; g <= last; g += 1) {
+                if (_gramStamp[g] != _epoch) {
+                    _gramStamp[g] = _epoch;
+                    _gramTotal += sign * gramScore(g);
+                }
+            }
+        }
+    }
+
+    /** Return the score of the n-gram of the decryption starting at I,
+     *  times GRAM_SCALE. */
+    private long gramScore(int i) {
+        int gram = 0;
+        for (int x = i; x < i + _gramLength; x += 1) {
+            gram = gram * _size + _out[x];
+        }
+        return _gramScores[gram];
+    }
+
+    /** Move position I from its rotor-output bucket to that of MID. */
+    private void move(int i, int mid) {
+        int old = _mid[i];
+        int lastPos = _bucket[old][_bucketSize[old] - 1];
+        _bucket[old][_where[i]] = lastPos;
+        _where[lastPos] = _where[i];
+        _bucketSize[old] -= 1;
+        _mid[i] = mid;
+        if (_bucketSize[mid] == _bucket[mid].length) {
+            _bucket[mid] = Arrays.copyOf(_bucket[mid], 2 * _bucketSize[mid]);
+        }
+        _where[i] = _bucketSize[mid];
+        _bucket[mid][_bucketSize[mid]] = i;
+        _bucketSize[mid] += 1;
+    }
+
+    /** Add DELTA (1 or -1) to the count of decrypted letter X, keeping
+     *  _coincidences, the sum over letters of count * (count - 1). */
+    private void count(int x, int delta) {
+        if (delta > 0) {
+            _coincidences += 2L * _counts[x];
+        } else {
+            _coincidences -= 2L * (_counts[x] - 1);
+        }
+        _counts[x] += delta;
+    }
+
+    /** Most plugboard entries changed by one pair(). */
+    private static final int MAX_CHANGED = 4;
+
+    /** Scale of the fixed-point n-gram scores. */
+    private static final double GRAM_SCALE = 1 << 24;
+
+    /** Least length of a _bucket array. */
+    private static final int MIN_BUCKET = 4;
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Indices of the ciphertext characters. */
+    private final int[] _cipher;
+
+    /** Permutation applied by the rotors and reflector at each position:
+     *  position i sends x to _cores[i * _size + x]. */
+    private final int[] _cores;
+
+    /** Positions of each ciphertext letter. */
+    private final int[][] _inputs;
+
+    /** The plugboard: _plug[x] is the partner of x. */
+    private final int[] _plug;
+
+    /** Rotor output at each position under the current plugboard. */
+    private final int[] _mid;
+
+    /** Decrypted letter at each position. */
+    private final int[] _out;
+
+    /** Positions whose rotor output is each letter, in the first
+     *  _bucketSize[letter] entries.  Each array starts with room for the
+     *  positions it holds under an empty plugboard, and doubles when it
+     *  fills, so together they stay near the ciphertext's length rather
+     *  than the alphabet size times that. */
+    private final int[][] _bucket;
+
+    /** Sizes of the _bucket lists. */
+    private final int[] _bucketSize;
+
+    /** Index of each position within its _bucket list. */
+    private final int[] _where;
+
+    /** Number of times each letter appears in the decryption. */
+    private final int[] _counts;
+
+    /** Sum over letters of count * (count - 1). */
+    private long _coincidences;
+
+    /** Positions affected by the change being applied. */
+    private final int[] _affected;
+
+    /** Epoch at which each position was last marked. */
+    private final int[] _stamp;
+
+    /** Epoch at which each n-gram was last rescored. */
+    private int[] _gramStamp = new int[0];
+
+    /** Current marking epoch. */
+    private int _epoch;
+
+    /** Letters changed by the last pair(). */
+    private final int[] _letters = new int[MAX_CHANGED];
+
+    /** Plugboard entries of _letters before the last pair(). */
+    private final int[] _oldValues = new int[MAX_CHANGED];
+
+    /** Plugboard entries of _letters being applied. */
+    private final int[] _newValues = new int[MAX_CHANGED];
+
+    /** Number of entries in _letters. */
+    private int _changed;
+
+    /** Length of scored n-grams. */
+    private int _gramLength;
+
+    /** Scores of n-grams times GRAM_SCALE, or null to score by index of
+     *  coincidence. */
+    private long[] _gramScores;
+
+    /** Sum of the scores of the decryption's n-grams, times
+     *  GRAM_SCALE. */
+    private long _gramTotal;
+}
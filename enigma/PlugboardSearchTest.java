@@ -0,0 +1,111 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PlugboardSearch class.
+ *  @author Michaela Warady
+ */
+public class PlugboardSearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** A plaintext long enough to find its plugboard by bigrams. */
+    private static final String PLAIN =
+        "ITWASTHEBESTOFTIMESITWASTHEWORSTOFTIMESITWASTHEAGE"
+        + "OFWISDOMITWASTHEAGEOFFOOLISHNESSITWASTHEEPOCHOFBELIEF"
+        + "ITWASTHEEPOCHOFINCREDULITYITWASTHESEASONOFLIGHTITWAS"
+        + "THESEASONOFDARKNESSITWASTHESPRINGOFHOPEITWASTHEWINTER"
+        + "OFDESPAIRWEHADEVERYTHINGBEFOREUSWEHADNOTHINGBEFOREUS";
+
+    @Test
+    public void testPlugboardSearch() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "I", "II", "III");
+        MachineTemplate template = new MachineTemplate(UPPER, 4, 3, allRotors);
+        String plain = PLAIN;
+        String[] rotors = {"B", "II", "I", "III"};
+        String cipher = template.instance(rotors, "KDG",
+                new Permutation("(AT) (SE) (OW) (HR)", UPPER)).convert(plain);
+
+        double[] bigrams = new double[26 * 26];
+        Arrays.fill(bigrams, -10);
+        for (int x = 0; x + 1 < plain.length(); x += 1) {
+            bigrams[(plain.charAt(x) - 'A') * 26 + plain.charAt(x + 1) - 'A']
+                = 0;
+        }
+        PlugboardSearch search =
+            new PlugboardSearch(template, rotors, "KDG", cipher);
+        search.setNGrams(2, bigrams);
+        search.pair(0, 1);
+        search.pair(2, 5);
+        search.undo();
+        assertEquals(1, search.partner(0));
+        assertEquals(2, search.partner(2));
+        assertEquals(template.instance(rotors, "KDG", search.plugboard())
+                .convert(cipher), search.decryption());
+        search.pair(0, 0);
+
+        search.climb();
+        assertEquals(plain, search.decryption());
+        assertEquals('T' - 'A', search.partner(0));
+    }
+
+    @Test
+    public void testIncrementalScore() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "I", "II", "III");
+        MachineTemplate template = new MachineTemplate(UPPER, 4, 3, allRotors);
+        String[] rotors = {"B", "II", "I", "III"};
+        String cipher = template.instance(rotors, "KDG",
+                new Permutation("(AT) (SE) (OW) (HR)", UPPER)).convert(PLAIN);
+        double[] bigrams = new double[26 * 26];
+        Arrays.fill(bigrams, 1);
+        for (int x = 0; x + 1 < PLAIN.length(); x += 1) {
+            bigrams[(PLAIN.charAt(x) - 'A') * 26 + PLAIN.charAt(x + 1) - 'A']
+                += 1;
+        }
+        for (int g = 0; g < bigrams.length; g += 1) {
+            bigrams[g] = Math.log(bigrams[g] / (PLAIN.length() + 26 * 26));
+        }
+        PlugboardSearch search =
+            new PlugboardSearch(template, rotors, "KDG", cipher);
+        search.setNGrams(2, bigrams);
+        double climbed = search.climb();
+
+        PlugboardSearch fresh =
+            new PlugboardSearch(template, rotors, "KDG", cipher);
+        for (int x = 0; x < 26; x += 1) {
+            if (search.partner(x) > x) {
+                fresh.pair(x, search.partner(x));
+            }
+        }
+        fresh.setNGrams(2, bigrams);
+        assertEquals(fresh.score(), climbed, 0);
+        assertEquals(fresh.score(), search.score(), 0);
+    }
+
+    @Test
+    public void testSupplementaryAlphabet() {
+        MachineTemplate template = new MachineTemplate(DESERET, 2, 1,
+                deseretRotors());
+        String[] order = {"R", "M"};
+        String start = new String(Character.toChars(0x10401));
+        String code = template.instance(order, start,
+                new Permutation("", DESERET))
+            .convert(DESERET_STRING.substring(0, 24));
+        PlugboardSearch plugs =
+            new PlugboardSearch(template, order, start, code);
+        plugs.pair(0, 1);
+        assertEquals(template.instance(order, start, plugs.plugboard())
+                .convert(code), plugs.decryption());
+    }
+}
@@ -12,6 +12,25 @@ class Rotor {
         _name = name;
         _permutation = perm;
         this._setting = 0;
+        if (size() <= MAX_TABLE_SIZE) {
+            precompute();
+        }
+    }
+
+    /** Fill _forwardTable and _backwardTable with the conversion of every
+     *  input at every setting, so that conversion needs no arithmetic. */
+    private void precompute() {
+        int n = size();
+        _forwardTable = new int[n * n];
+        _backwardTable = new int[n * n];
+        for (int s = 0; s < n; s += 1) {
+            for (int p = 0; p < n; p += 1) {
+                _forwardTable[s * n + p] = _permutation.wrap(
+                        _permutation.permute(_permutation.wrap(p + s)) - s);
+                _backwardTable[s * n + p] = _permutation.wrap(
+                        _permutation.invert(_permutation.wrap(p + s)) - s);
+            }
+        }
     }
 
     /** Return my name. */
@@ -56,6 +75,7 @@ class Rotor {
                     "This setting is not possible with the current alphabet.");
         } else {
             this._setting = posn;
+            this._offset = posn * size();
         }
     }
 
@@ -67,6 +87,9 @@ class Rotor {
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
+        if (_forwardTable != null) {
+            return _forwardTable[_offset + p];
+        }
         return this._permutation.wrap(this._permutation.permute(
                 this._permutation.wrap(p + _setting)) - _setting);
     }
@@ -74,16 +97,70 @@ class Rotor {
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
+        if (_backwardTable != null) {
+            return _backwardTable[_offset + e];
+        }
         return this._permutation.wrap(this._permutation.invert(
                 this._permutation.wrap(e + _setting)) - _setting);
     }
 
+    /** Return the conversion of P (an integer in the range 0..size()-1)
+     *  according to my permutation, as if my setting were SETTING. */
+    int convertForward(int p, int setting) {
+        if (_forwardTable != null) {
+            return _forwardTable[setting * size() + p];
+        }
+        return this._permutation.wrap(this._permutation.permute(
+                this._permutation.wrap(p + setting)) - setting);
+    }
+
+    /** Return the conversion of E (an integer in the range 0..size()-1)
+     *  according to the inverse of my permutation, as if my setting were
+     *  SETTING. */
+    int convertBackward(int e, int setting) {
+        if (_backwardTable != null) {
+            return _backwardTable[setting * size() + e];
+        }
+        return this._permutation.wrap(this._permutation.invert(
+                this._permutation.wrap(e + setting)) - setting);
+    }
+
+    /** Return my conversion of every input at every setting, indexed by
+     *  setting * size() + input, or null if not precomputed.  The array
+     *  is shared and must not be modified. */
+    int[] forwardTable() {
+        return _forwardTable;
+    }
+
+    /** Return my inverse conversion of every input at every setting, laid
+     *  out as forwardTable(), or null if not precomputed. */
+    int[] backwardTable() {
+        return _backwardTable;
+    }
+
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
         return false;
     }
 
+    /** Returns true iff I would be at a notch were my setting POSN. */
+    boolean notchAt(int posn) {
+        return false;
+    }
+
+    /** Return the number of advances from setting POSN until I am at a
+     *  notch (0 if POSN is one), or -1 if I have no notches. */
+    int toNotch(int posn) {
+        return -1;
+    }
+
+    /** Return the number of my notches at settings below POSN, where
+     *  0 <= POSN <= size(). */
+    int notchesBefore(int posn) {
+        return 0;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
@@ -107,6 +184,20 @@ class Rotor {
     /** Holds setting. */
     private int _setting;
 
+    /** Start of the row for _setting in my conversion tables. */
+    private int _offset;
+
+    /** Largest alphabet size for which conversion tables are built. */
+    static final int MAX_TABLE_SIZE = 64;
+
+    /** Conversion of every input at every setting, indexed by
+     *  setting * size() + input, or null if not precomputed. */
+    private int[] _forwardTable;
+
+    /** Inverse conversion of every input at every setting, laid out as
+     *  _forwardTable. */
+    private int[] _backwardTable;
+
     /** Returns setting. */
     public int getSetting() {
         return this._setting;
@@ -115,8 +206,11 @@ class Rotor {
     /** Sets sett. */
     public void setter() {
         this._setting += 1;
-        this._setting = this._setting
-                % (this.permutation().getAlphabet().size());
+        this._offset += size();
+        if (this._setting == size()) {
+            this._setting = 0;
+            this._offset = 0;
+        }
     }
 
 
@@ -0,0 +1,146 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** The cycle into which a machine's rotor settings fall.  From any
+ *  starting settings, the rotors pass through a prefix of settings that
+ *  never recur (because of double stepping) and then repeat a cycle of
+ *  settings forever.  Both lengths, counted in characters converted,
+ *  depend on the notches of the rotors, the double steps and the number
+ *  of pawls.
+ *
+ *  They are found with Brent's cycle detection, in constant memory, over
+ *  the settings just after each turnover (a character that moves a rotor
+ *  other than the rightmost), packed into a long by a Stepper.  Between
+ *  turnovers only the rightmost rotor moves, so each run is crossed in
+ *  one operation, and the work is proportional to the number of
+ *  turnovers in the prefix and cycle rather than to their length.  The
+ *  exact prefix is then located within the run in which the turnover
+ *  sequence enters its cycle.
+ *  @author Michaela Warady
+ */
+class RotorCycle {
+
+    /** The cycle reached by the rotors of STEPPER from the settings
+     *  START, indexed by slot. */
+    RotorCycle(Stepper stepper, int[] start) {
+        if (!stepper.packable()) {
+            throw error("rotor settings do not fit in a long");
+        }
+        _stepper = stepper;
+        _scratch = start.clone();
+        long origin = stepper.pack(start);
+
+        long power = 1, turnovers = 1;
+        long tortoise = origin;
+        long hare = next(origin);
+        if (_distance == 0) {
+            noTurnovers(origin);
+            return;
+        }
+        long length = _distance;
+        while (tortoise != hare) {
+            if (power == turnovers) {
+                tortoise = hare;
+                power *= 2;
+                turnovers = 0;
+                length = 0;
+            }
+            hare = next(hare);
+            if (_distance == 0) {
+                noTurnovers(origin);
+                return;
+            }
+            turnovers += 1;
+            length += _distance;
+        }
+        _period = length;
+
+        hare = origin;
+        for (long i = 0; i < turnovers; i += 1) {
+            hare = next(hare);
+        }
+        tortoise = origin;
+        long before = origin, time = 0, timeBefore = 0;
+        while (tortoise != hare) {
+            before = tortoise;
+            timeBefore = time;
+            tortoise = next(tortoise);
+            time += _distance;
+            hare = next(hare);
+        }
+        if (time == 0) {
+            _prefix = 0;
+            return;
+        }
+        long lo = timeBefore, hi = time;
+        while (lo < hi) {
+            long mid = lo + (hi - lo) / 2;
+            if (recurs(before, mid - timeBefore)) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        _prefix = lo;
+    }
+
+    /** Return the number of characters in each repetition of the
+     *  cycle. */
+    long period() {
+        return _period;
+    }
+
+    /** Return the number of characters converted before the rotors first
+     *  reach settings in the cycle. */
+    long prefix() {
+        return _prefix;
+    }
+
+    /** Return the packed settings after the next turnover from STATE,
+     *  setting _distance to the number of characters advanced, or to 0
+     *  if there are no more turnovers. */
+    private long next(long state) {
+        _stepper.unpack(state, _scratch);
+        _distance = _stepper.advanceTurnover(_scratch);
+        return _stepper.pack(_scratch);
+    }
+
+    /** Return true iff the settings K characters after packed settings
+     *  STATE recur a period later. */
+    private boolean recurs(long state, long k) {
+        _stepper.unpack(state, _scratch);
+        _stepper.advance(_scratch, k);
+        long here = _stepper.pack(_scratch);
+        _stepper.advance(_scratch, _period);
+        return _stepper.pack(_scratch) == here;
+    }
+
+    /** Set the period and prefix for settings that, starting at packed
+     *  settings ORIGIN, reach a point after which only the rightmost rotor
+     *  moves.  The settings just before the last turnover never recur,
+     *  and the rightmost rotor then cycles through its positions. */
+    private void noTurnovers(long origin) {
+        _period = _stepper.size();
+        _prefix = 0;
+        for (long state = next(origin); _distance != 0;
+             state = next(state)) {
+            _prefix += _distance;
+        }
+    }
+
+    /** Schedule by which the rotors move. */
+    private final Stepper _stepper;
+
+    /** Settings of each slot, unpacked while stepping. */
+    private final int[] _scratch;
+
+    /** Characters advanced by the last call of next. */
+    private long _distance;
+
+    /** Length of the cycle, in characters. */
+    private long _period;
+
+    /** Length of the prefix, in characters. */
+    private long _prefix;
+}
@@ -0,0 +1,44 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RotorCycle class.
+ *  @author Michaela Warady
+ */
+public class RotorCycleTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testPeriodAndPrefix() {
+        Stepper stepper = new Stepper(navalRotors("B", "VI", "II", "I"));
+        int[][] starts = {{0, 0, 0, 0}, {0, 0, 4, 0}, {0, 12, 4, 16},
+                          {0, 25, 3, 15}};
+        for (int[] start : starts) {
+            String name = Arrays.toString(start);
+            RotorCycle cycle = new RotorCycle(stepper, start.clone());
+            HashMap<String, Integer> seen = new HashMap<>();
+            int[] settings = start.clone();
+            int time = 0;
+            while (!seen.containsKey(Arrays.toString(settings))) {
+                seen.put(Arrays.toString(settings), time);
+                stepper.step(settings);
+                time += 1;
+            }
+            int first = seen.get(Arrays.toString(settings));
+            assertEquals(name, time - first, cycle.period());
+            assertEquals(name, first, cycle.prefix());
+        }
+    }
+}
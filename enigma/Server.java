@@ -0,0 +1,283 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringWriter;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running server that converts messages for clients connecting
+ *  over a loopback or Unix-domain socket, so that a machine's
+ *  configuration is read, and its code compiled, only once.
+ *
+ *  Each request is a settings line, as in an input file, followed by a
+ *  message body of any number of lines.  Each is sent as a big-endian
+ *  int byte count followed by that many bytes of UTF-8.  The body is
+ *  converted line by line by a fresh machine set up by the settings
+ *  line, so requests are independent.  The response is a status byte
+ *  (OK or FAILED), then a byte count and UTF-8 text as for requests:
+ *  the converted lines in groups of five, or an error message.  A
+ *  connection may carry any number of requests in turn.
+ *
+ *  At most a given number of connections are served at once; further
+ *  clients wait to be accepted.  Conversions run on one worker thread
+ *  per processor, behind a queue of limited depth.  When the queue is
+ *  full, connections stop reading requests until it drains, so that a
+ *  flood of requests pushes back on its senders.
+ *  @author Michaela Warady
+ */
+class Server implements Closeable {
+
+    /** A server for machines described by TEMPLATE, listening at ADDRESS,
+     *  serving at most MAXCONNECTIONS connections at once with at most
+     *  QUEUEDEPTH requests waiting for a worker. */
+    Server(MachineTemplate template, SocketAddress address,
+           int maxConnections, int queueDepth) throws IOException {
+        if (maxConnections < 1 || queueDepth < 0) {
+            throw error("bad server limits");
+        }
+        _template = template;
+        if (address instanceof UnixDomainSocketAddress) {
+            _channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            _socketFile = (UnixDomainSocketAddress) address;
+        } else {
+            _channel = ServerSocketChannel.open();
+        }
+        _channel.bind(address, maxConnections);
+        int workers = Runtime.getRuntime().availableProcessors();
+        _connections = new Semaphore(maxConnections);
+        _slots = new Semaphore(workers + queueDepth);
+        _handlers = Executors.newFixedThreadPool(maxConnections);
+        _workers = Executors.newFixedThreadPool(workers);
+    }
+
+    /** Return the address described by SPEC: a port number on the
+     *  loopback interface if SPEC is numeric, and otherwise the path of a
+     *  Unix-domain socket. */
+    static SocketAddress address(String spec) {
+        if (spec.matches("\\d+")) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                         Integer.parseInt(spec));
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    /** Return the address I am listening at. */
+    SocketAddress localAddress() throws IOException {
+        return _channel.getLocalAddress();
+    }
+
+    /** Accept and serve connections until I am closed. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                _connections.acquireUninterruptibly();
+                SocketChannel client;
+                try {
+                    client = _channel.accept();
+                } catch (IOException excp) {
+                    _connections.release();
+                    throw excp;
+                }
+                _handlers.execute(() -> handle(client));
+            }
+        } catch (AsynchronousCloseException excp) {
+            return;
+        }
+    }
+
+    /** Stop accepting connections, abandon those open, and remove my
+     *  socket file, if any. */
+    @Override
+    public void close() throws IOException {
+        _channel.close();
+        _handlers.shutdownNow();
+        _workers.shutdownNow();
+        if (_socketFile != null) {
+            Files.deleteIfExists(_socketFile.getPath());
+        }
+    }
+
+    /** Send the request made of SETTINGS and BODY to the server at
+     *  ADDRESS on a new connection, and return the converted body. */
+    static String request(SocketAddress address, String settings,
+                          String body) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            writeString(out, settings);
+            writeString(out, body);
+            out.flush();
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel)));
+            byte status = in.readByte();
+            String text = readString(in);
+            if (status != OK) {
+                throw new EnigmaException(text);
+            }
+            return text;
+        }
+    }
+
+    /** Serve the requests arriving on CLIENT until it is closed. */
+    private void handle(SocketChannel client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(client)));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(client)));
+            while (true) {
+                String settings;
+                try {
+                    settings = readString(in);
+                } catch (EOFException excp) {
+                    break;
+                }
+                String body = readString(in);
+                String result;
+                try {
+                    result = submit(settings, body);
+                    out.writeByte(OK);
+                } catch (EnigmaException excp) {
+                    result = excp.getMessage();
+                    out.writeByte(FAILED);
+                }
+                writeString(out, result);
+                out.flush();
+            }
+        } catch (IOException | EnigmaException excp) {
+            /* The connection is lost or the client broke the protocol;
+             * there is no one to report to. */
+            return;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } finally {
+            _connections.release();
+        }
+    }
+
+    /** Return the conversion of BODY as set up by SETTINGS, computed on a
+     *  worker once a place in the queue is free. */
+    private String submit(String settings, String body)
+        throws InterruptedException {
+        _slots.acquire();
+        Future<String> result;
+        try {
+            result = _workers.submit(() -> {
+                try {
+                    return convert(settings, body);
+                } finally {
+                    _slots.release();
+                }
+            });
+        } catch (RuntimeException excp) {
+            _slots.release();
+            throw error("server is shutting down");
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof EnigmaException) {
+                throw (EnigmaException) excp.getCause();
+            }
+            throw error("internal error: %s", excp.getCause());
+        }
+    }
+
+    /** Return the lines of BODY converted by a machine set up by SETTINGS
+     *  and printed in groups of five. */
+    private String convert(String settings, String body) throws IOException {
+        if (!settings.startsWith("*")) {
+            throw new EnigmaException("Request must start with settings.");
+        }
+        MachineInstance mach = _template.instance(settings);
+        StringWriter result = new StringWriter(body.length() * 6 / 5 + 1);
+        char[] buf =
+            new char[body.length() * _template.alphabet().maxCharCount()];
+        int start = 0;
+        while (true) {
+            int end = body.indexOf('\n', start);
+            int last = end < 0 ? body.length() : end;
+            if (last > start && body.charAt(last - 1) == '\r') {
+                last -= 1;
+            }
+            int n = mach.convert(body.subSequence(start, last), buf, 0);
+            Main.printMessageLine(result, buf, n);
+            if (end < 0) {
+                break;
+            }
+            result.write('\n');
+            start = end + 1;
+        }
+        return result.toString();
+    }
+
+    /** Write S to OUT as a byte count and its UTF-8 encoding. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return a string read from IN, as written by writeString.  Throws
+     *  EOFException if IN is at its end before the byte count. */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME) {
+            throw error("bad frame length %d", length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Status bytes of responses. */
+    static final byte OK = 0, FAILED = 1;
+
+    /** Largest number of bytes in a settings line or message body. */
+    static final int MAX_FRAME = 1 << 26;
+
+    /** Description of the machines I simulate. */
+    private final MachineTemplate _template;
+
+    /** Channel on which I accept connections. */
+    private final ServerSocketChannel _channel;
+
+    /** Address of my Unix-domain socket, or null if I use TCP. */
+    private UnixDomainSocketAddress _socketFile;
+
+    /** Permits for connections not yet accepted. */
+    private final Semaphore _connections;
+
+    /** Permits for requests not yet running or queued. */
+    private final Semaphore _slots;
+
+    /** Threads serving connections. */
+    private final ExecutorService _handlers;
+
+    /** Threads converting messages. */
+    private final ExecutorService _workers;
+}
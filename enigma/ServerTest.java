@@ -0,0 +1,53 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Server class.
+ *  @author Michaela Warady
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testServer() throws Exception {
+        ArrayList<Rotor> allRotors = navalRotors("B", "Beta", "III", "IV", "I");
+        MachineTemplate template = new MachineTemplate(UPPER, 5, 3, allRotors);
+        Server server = new Server(template, Server.address("0"), 2, 1);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException excp) {
+                throw new Error(excp);
+            }
+        });
+        serving.start();
+        try {
+            String settings = "* B BETA III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+            assertEquals("QVPQS OKOIL PUBKJ ZPISF XDW\n\nUWCXD GDRZM ",
+                    Server.request(server.localAddress(), settings,
+                            "FROM his shoulder Hiawatha\n\nFROM his sho"));
+            try {
+                Server.request(server.localAddress(), "B BETA", "A");
+                fail("request without settings accepted");
+            } catch (EnigmaException excp) {
+                assertEquals("Request must start with settings.",
+                        excp.getMessage());
+            }
+        } finally {
+            server.close();
+            serving.join();
+        }
+    }
+}
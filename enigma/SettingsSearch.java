@@ -0,0 +1,401 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A ciphertext-only search for the settings of a machine described by a
+ *  MachineTemplate.  Every choice of reflector, fixed rotors and moving
+ *  rotors from the template's rotors, at every setting of every slot, is
+ *  a candidate; each candidate decryption is scored by its index of
+ *  coincidence or, if n-gram statistics are supplied, by its n-gram
+ *  log-probability, and the best few candidates are kept.  Candidates
+ *  are numbered, ranges of numbers are divided among the threads of a
+ *  ForkJoinPool by work stealing, and testing a candidate allocates
+ *  nothing.
+ *  @author Michaela Warady
+ */
+class SettingsSearch {
+
+    /** A search for the settings of TEMPLATE under which CIPHERTEXT (whose
+     *  blanks and tabs are ignored) decrypts best, keeping the TOPK best
+     *  candidates. */
+    SettingsSearch(MachineTemplate template, String ciphertext, int topK) {
+        _alphabet = template.alphabet();
+        _size = _alphabet.size();
+        _numRotors = template.numRotors();
+        _firstMoving = template.numRotors() - template.numPawls();
+        _topK = topK;
+        _plugboard = new Permutation("", _alphabet);
+        _cipher = ciphertext.replace(" ", "").replace("\t", "")
+            .codePoints().toArray();
+        for (int x = 0; x < _cipher.length; x += 1) {
+            _cipher[x] = _alphabet.toFoldedInt(_cipher[x]);
+        }
+        _orders = template.arrangements();
+        _steppers = new Stepper[_orders.size()];
+        for (int x = 0; x < _steppers.length; x += 1) {
+            _steppers[x] = new Stepper(Arrays.asList(_orders.get(x)));
+        }
+        _fixedSettings = power(_size, _firstMoving - 1);
+        _movingSettings = power(_size, _numRotors - _firstMoving);
+        _total = _orders.size() * _fixedSettings * _movingSettings;
+    }
+
+    /** Use PLUGBOARD, rather than none, in every candidate. */
+    void setPlugboard(Permutation plugboard) {
+        _plugboard = plugboard;
+    }
+
+    /** Score candidates by the n-grams of length LENGTH in their
+     *  decryptions rather than by index of coincidence.  LOGPROBS[g] is
+     *  the log-probability of the n-gram whose characters have indices
+     *  c0 ... c(LENGTH-1) in my alphabet, where
+     *  g = c0 * size^(LENGTH-1) + ... + c(LENGTH-1). */
+    void setNGrams(int length, double[] logProbs) {
+        if (logProbs.length != power(_size, length)) {
+            throw new EnigmaException("Wrong number of n-gram scores.");
+        }
+        _gramLength = length;
+        _gramScores = logProbs;
+    }
+
+    /** Return the number of candidates. */
+    long total() {
+        return _total;
+    }
+
+    /** Return the number of candidates tested so far by the current or
+     *  last run.  May be called from any thread. */
+    long progress() {
+        return _progress.get();
+    }
+
+    /** Test every candidate on the common ForkJoinPool and return the best,
+     *  best first. */
+    List<Candidate> run() {
+        return run(ForkJoinPool.commonPool());
+    }
+
+    /** Test every candidate on POOL and return the best, best first. */
+    List<Candidate> run(ForkJoinPool pool) {
+        _progress.set(0);
+        Best best = pool.invoke(new Search(0, _total));
+        ArrayList<Candidate> result = new ArrayList<>();
+        for (int x = 0; x < best._count; x += 1) {
+            result.add(candidate(best._ids[x], best._scores[x]));
+        }
+        Collections.sort(result,
+            (a, b) -> Double.compare(b.score(), a.score()));
+        return result;
+    }
+
+    /** A candidate setting and its score. */
+    static class Candidate {
+
+        /** A candidate with rotors named ROTORS, setting SETTING and
+         *  score SCORE. */
+        Candidate(String[] rotors, String setting, double score) {
+            _rotors = rotors;
+            _setting = setting;
+            _score = score;
+        }
+
+        /** Return the names of my rotors, reflector first. */
+        String[] rotors() {
+            return _rotors.clone();
+        }
+
+        /** Return my setting, as for Machine.setRotors. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my score; higher is better. */
+        double score() {
+            return _score;
+        }
+
+        /** Return the settings line, without plugboard, selecting me. */
+        String settingsLine() {
+            return "* " + String.join(" ", _rotors) + " " + _setting;
+        }
+
+        @Override
+        public String toString() {
+            return settingsLine() + " " + _score;
+        }
+
+        /** Names of my rotors. */
+        private final String[] _rotors;
+
+        /** My setting. */
+        private final String _setting;
+
+        /** My score. */
+        private final double _score;
+    }
+
+    /** Return the candidate numbered ID, with score SCORE. */
+    private Candidate candidate(long id, double score) {
+        Rotor[] order = _orders.get((int) (id / _movingSettings
+                / _fixedSettings));
+        int[] settings = new int[_numRotors];
+        decode(id, settings);
+        String[] names = new String[_numRotors];
+        StringBuilder setting = new StringBuilder();
+        for (int s = 0; s < _numRotors; s += 1) {
+            names[s] = order[s].name().toUpperCase();
+            if (s > 0) {
+                setting.appendCodePoint(_alphabet.codePointAt(settings[s]));
+            }
+        }
+        return new Candidate(names, setting.toString(), score);
+    }
+
+    /** Set SETTINGS[1 ..] to the settings of candidate ID, in which the
+     *  slots' settings are digits in base size, slot 1 most significant,
+     *  below the index of its rotor order. */
+    private void decode(long id, int[] settings) {
+        long rest = id;
+        for (int s = _numRotors - 1; s > 0; s -= 1) {
+            settings[s] = (int) (rest % _size);
+            rest /= _size;
+        }
+    }
+
+    /** Return BASE ^ EXP. */
+    private static long power(int base, int exp) {
+        long result = 1;
+        for (int x = 0; x < exp; x += 1) {
+            result *= base;
+        }
+        return result;
+    }
+
+    /** The best candidates from part of a search, held in a min-heap on
+     *  score of at most _topK entries. */
+    private class Best {
+
+        /** Add candidate ID with score SCORE if it is among the best. */
+        void offer(long id, double score) {
+            if (_count < _topK) {
+                _ids[_count] = id;
+                _scores[_count] = score;
+                _count += 1;
+                for (int x = _count - 1; x > 0 && less(x, (x - 1) / 2);
+                     x = (x - 1) / 2) {
+                    swap(x, (x - 1) / 2);
+                }
+            } else if (_topK > 0 && score > _scores[0]) {
+                _ids[0] = id;
+                _scores[0] = score;
+                int x = 0;
+                while (true) {
+                    int c = 2 * x + 1;
+                    if (c >= _count) {
+                        break;
+                    }
+                    if (c + 1 < _count && less(c + 1, c)) {
+                        c += 1;
+                    }
+                    if (!less(c, x)) {
+                        break;
+                    }
+                    swap(x, c);
+                    x = c;
+                }
+            }
+        }
+
+        /** Add the candidates in OTHER. */
+        void addAll(Best other) {
+            for (int x = 0; x < other._count; x += 1) {
+                offer(other._ids[x], other._scores[x]);
+            }
+        }
+
+        /** Return true iff entry I scores below entry J. */
+        private boolean less(int i, int j) {
+            return _scores[i] < _scores[j];
+        }
+
+        /** Exchange entries I and J. */
+        private void swap(int i, int j) {
+            long id = _ids[i];
+            _ids[i] = _ids[j];
+            _ids[j] = id;
+            double score = _scores[i];
+            _scores[i] = _scores[j];
+            _scores[j] = score;
+        }
+
+        /** Candidate numbers. */
+        private final long[] _ids = new long[_topK];
+
+        /** Scores of _ids. */
+        private final double[] _scores = new double[_topK];
+
+        /** Number of entries in use. */
+        private int _count;
+    }
+
+    /** The search of candidates numbered _from up to _to. */
+    private class Search extends RecursiveTask<Best> {
+
+        /** Serialization version; tasks are never actually serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** The search of candidates FROM <= id < TO. */
+        Search(long from, long to) {
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected Best compute() {
+            if (_to - _from > LEAF) {
+                long mid = _from + (_to - _from) / 2;
+                Search left = new Search(_from, mid);
+                left.fork();
+                Best best = new Search(mid, _to).compute();
+                best.addAll(left.join());
+                return best;
+            }
+            Best best = new Best();
+            int[] settings = new int[_numRotors];
+            int[] start = new int[_numRotors];
+            int[] core = new int[_size];
+            int[] counts = new int[_size];
+            long group = -1;
+            for (long id = _from; id < _to; id += 1) {
+                decode(id, start);
+                long g = id / _movingSettings;
+                int orderIndex = (int) (g / _fixedSettings);
+                if (g != group) {
+                    group = g;
+                    buildCore(_orders.get(orderIndex), start, core);
+                }
+                System.arraycopy(start, 0, settings, 0, _numRotors);
+                best.offer(id, score(_orders.get(orderIndex),
+                        _steppers[orderIndex], settings, core, counts));
+            }
+            _progress.addAndGet(_to - _from);
+            return best;
+        }
+
+        /** First candidate searched. */
+        private final long _from;
+
+        /** Limit of candidates searched. */
+        private final long _to;
+    }
+
+    /** Fill CORE with the round trip through the fixed rotors and
+     *  reflector of ORDER at the settings in SETTINGS. */
+    private void buildCore(Rotor[] order, int[] settings, int[] core) {
+        for (int x = 0; x < _size; x += 1) {
+            int d = x;
+            for (int q = _firstMoving - 1; q > 0; q -= 1) {
+                d = order[q].convertForward(d, settings[q]);
+            }
+            d = order[0].convertForward(d, 0);
+            for (int r = 1; r < _firstMoving; r += 1) {
+                d = order[r].convertBackward(d, settings[r]);
+            }
+            core[x] = d;
+        }
+    }
+
+    /** Return the score of decrypting _cipher with the rotors ORDER,
+     *  stepped by STEPPER from SETTINGS (which are changed), whose fixed
+     *  part is CORE.  COUNTS is scratch space of length _size. */
+    private double score(Rotor[] order, Stepper stepper, int[] settings,
+                         int[] core, int[] counts) {
+        Arrays.fill(counts, 0);
+        int last = _numRotors - 1;
+        int gram = 0;
+        double total = 0;
+        for (int x = 0; x < _cipher.length; x += 1) {
+            stepper.step(settings);
+            int d = _plugboard.permute(_cipher[x]);
+            for (int q = last; q >= _firstMoving; q -= 1) {
+                d = order[q].convertForward(d, settings[q]);
+            }
+            d = core[d];
+            for (int r = _firstMoving; r <= last; r += 1) {
+                d = order[r].convertBackward(d, settings[r]);
+            }
+            d = _plugboard.invert(d);
+            if (_gramScores == null) {
+                counts[d] += 1;
+            } else {
+                gram = (gram * _size + d) % _gramScores.length;
+                if (x >= _gramLength - 1) {
+                    total += _gramScores[gram];
+                }
+            }
+        }
+        if (_gramScores != null) {
+            return total;
+        }
+        long sum = 0;
+        for (int c : counts) {
+            sum += (long) c * (c - 1);
+        }
+        long n = _cipher.length;
+        return n < 2 ? 0 : (double) sum / (n * (n - 1));
+    }
+
+    /** Most candidates searched by one task without splitting. */
+    private static final long LEAF = 1 << 10;
+
+    /** Alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** Size of _alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** First slot holding a moving rotor. */
+    private final int _firstMoving;
+
+    /** Number of candidates kept. */
+    private final int _topK;
+
+    /** Indices of the ciphertext characters. */
+    private final int[] _cipher;
+
+    /** Every possible arrangement of rotors in the slots. */
+    private final List<Rotor[]> _orders;
+
+    /** Stepping schedule of each arrangement in _orders. */
+    private final Stepper[] _steppers;
+
+    /** Number of combinations of fixed-rotor settings. */
+    private final long _fixedSettings;
+
+    /** Number of combinations of moving-rotor settings. */
+    private final long _movingSettings;
+
+    /** Total number of candidates. */
+    private final long _total;
+
+    /** Candidates tested so far. */
+    private final AtomicLong _progress = new AtomicLong();
+
+    /** Plugboard used with every candidate. */
+    private Permutation _plugboard;
+
+    /** Length of scored n-grams. */
+    private int _gramLength;
+
+    /** Scores of n-grams, or null to score by index of coincidence. */
+    private double[] _gramScores;
+}
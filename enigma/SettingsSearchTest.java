@@ -0,0 +1,54 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SettingsSearch class.
+ *  @author Michaela Warady
+ */
+public class SettingsSearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testSettingsSearch() {
+        ArrayList<Rotor> allRotors = navalRotors("B", "C", "I", "II", "III");
+        MachineTemplate template = new MachineTemplate(UPPER, 3, 2, allRotors);
+        String plain = "IT WAS THE BEST OF TIMES IT WAS THE WORST OF TIMES "
+            + "IT WAS THE AGE OF WISDOM IT WAS THE AGE OF FOOLISHNESS "
+            + "IT WAS THE EPOCH OF BELIEF IT WAS THE EPOCH OF INCREDULITY "
+            + "IT WAS THE SEASON OF LIGHT IT WAS THE SEASON OF DARKNESS";
+        String cipher = template.instance("* C III I QD").convert(plain);
+
+        SettingsSearch search = new SettingsSearch(template, cipher, 3);
+        assertEquals(2 * 6 * 26 * 26, search.total());
+        List<SettingsSearch.Candidate> best = search.run();
+        assertEquals(search.total(), search.progress());
+        assertEquals(3, best.size());
+        assertEquals("* C III I QD", best.get(0).settingsLine());
+        assertTrue(best.get(0).score() >= best.get(1).score());
+    }
+
+    @Test
+    public void testSupplementaryAlphabet() {
+        MachineTemplate template = new MachineTemplate(DESERET, 2, 1,
+                deseretRotors());
+        String[] order = {"R", "M"};
+        String start = new String(Character.toChars(0x10401));
+        String code = template.instance(order, start,
+                new Permutation("", DESERET))
+            .convert(DESERET_STRING.substring(0, 24));
+        SettingsSearch search = new SettingsSearch(template, code, 1);
+        assertEquals(1, search.run().get(0).setting().codePointCount(0, 2));
+    }
+}
@@ -0,0 +1,315 @@
+package enigma;
+
+import java.util.List;
+
+/** The stepping schedule of a set of rotor slots, as applied by
+ *  Machine.convert(int) before each character.  A Stepper operates on
+ *  arrays of slot settings rather than on the rotors themselves, so any
+ *  number of threads may use one Stepper at once, and it can move a
+ *  setting array forward by many characters at a time.
+ *  @author Michaela Warady
+ */
+class Stepper {
+
+    /** A Stepper for the rotors in ROTORS, where ROTORS.get(0) is the
+     *  reflector, as arranged by Machine.insertRotors. */
+    Stepper(List<Rotor> rotors) {
+        _rotors = rotors.toArray(new Rotor[rotors.size()]);
+        _size = _rotors[0].size();
+        _rotates = new boolean[_rotors.length];
+        for (int s = 0; s < _rotors.length; s += 1) {
+            _rotates[s] = _rotors[s].rotates();
+        }
+        int last = _rotors.length - 1, first = 0;
+        while (first < last && !_rotates[first]) {
+            first += 1;
+        }
+        boolean direct = _rotates[last];
+        for (int s = first; s <= last && direct; s += 1) {
+            direct = _rotates[s]
+                && (s == first || notchGap(s) >= (s < last ? 3 : 2));
+        }
+        _firstMoving = first;
+        _direct = direct;
+    }
+
+    /** Return the number of rotor slots, and so the length of a setting
+     *  array. */
+    int numSlots() {
+        return _rotors.length;
+    }
+
+    /** Advance SETTINGS, indexed by slot, by one character, exactly as
+     *  Machine.convert(int) advances its rotors. */
+    void step(int[] settings) {
+        step(settings, null);
+    }
+
+    /** Advance SETTINGS as for step(int[]), recording in METRICS, unless
+     *  it is null, the advances of every rotor but the rightmost, and any
+     *  double steps.  The rightmost rotor's advances are left to
+     *  MachineMetrics.converted. */
+    void step(int[] settings, MachineMetrics metrics) {
+        int last = _rotors.length - 1;
+        for (int s = 1; s < last; s += 1) {
+            if (_rotates[s - 1] && _rotors[s].notchAt(settings[s])) {
+                settings[s] = next(settings[s]);
+                settings[s - 1] = next(settings[s - 1]);
+                if (metrics != null) {
+                    metrics.advanced(s, 1);
+                    metrics.advanced(s - 1, 1);
+                    metrics.doubleStepped(1);
+                }
+            }
+        }
+        if (_rotates[last - 1] && _rotors[last].notchAt(settings[last])) {
+            settings[last - 1] = next(settings[last - 1]);
+            if (metrics != null) {
+                metrics.advanced(last - 1, 1);
+            }
+        }
+        if (!_rotates[last]) {
+            throw new EnigmaException("FixedRotor can't advance!");
+        }
+        settings[last] = next(settings[last]);
+    }
+
+    /** Advance SETTINGS, indexed by slot, by K characters.  When the
+     *  notches of each rotating rotor but the leftmost are far enough
+     *  apart (see jump), each rotor's advances are counted from its
+     *  notches, and the cost is independent of K.  Otherwise, runs of
+     *  characters during which only the rightmost rotor moves are
+     *  skipped in one operation, so the cost is proportional to the
+     *  number of turnovers in those K characters (about K / size for a
+     *  single notch) rather than to K. */
+    void advance(int[] settings, long k) {
+        advance(settings, k, null);
+    }
+
+    /** Advance SETTINGS as for advance(int[], long), recording advances
+     *  in METRICS, unless it is null, as for step(int[], MachineMetrics). */
+    void advance(int[] settings, long k, MachineMetrics metrics) {
+        int last = _rotors.length - 1;
+        if (_direct && k > _rotors.length) {
+            jump(settings, k, metrics);
+            return;
+        }
+        while (k > 0) {
+            long quiet = Math.min(quietSteps(settings), k);
+            settings[last] = (int) ((settings[last] + quiet) % _size);
+            k -= quiet;
+            if (k > 0) {
+                step(settings, metrics);
+                k -= 1;
+            }
+        }
+    }
+
+    /** Advance SETTINGS through the run of characters, starting from
+     *  them, that move only the rightmost rotor, and then through the
+     *  character that ends the run by moving another rotor.  Returns the
+     *  number of characters advanced, or 0, leaving SETTINGS unchanged,
+     *  if no character will ever move any rotor but the rightmost. */
+    long advanceTurnover(int[] settings) {
+        long quiet = quietSteps(settings);
+        if (quiet == Long.MAX_VALUE) {
+            return 0;
+        }
+        int last = _rotors.length - 1;
+        settings[last] = (int) ((settings[last] + quiet) % _size);
+        step(settings);
+        return quiet + 1;
+    }
+
+    /** Return true iff pack can hold the settings of my rotating slots,
+     *  that is, iff size ^ (number of rotating slots) fits in a long. */
+    boolean packable() {
+        long states = 1;
+        for (int s = 0; s < _rotors.length; s += 1) {
+            if (_rotates[s]) {
+                if (states > Long.MAX_VALUE / _size) {
+                    return false;
+                }
+                states *= _size;
+            }
+        }
+        return true;
+    }
+
+    /** Return the settings of my rotating slots in SETTINGS, indexed by
+     *  slot, packed into one long as the digits of a number in base
+     *  size, the rightmost slot's least significant.  The other slots
+     *  never change, so this identifies SETTINGS among all those reached
+     *  from it.  Requires packable(). */
+    long pack(int[] settings) {
+        long state = 0;
+        for (int s = 0; s < _rotors.length; s += 1) {
+            if (_rotates[s]) {
+                state = state * _size + settings[s];
+            }
+        }
+        return state;
+    }
+
+    /** Set the rotating slots of SETTINGS from STATE, as produced by
+     *  pack. */
+    void unpack(long state, int[] settings) {
+        for (int s = _rotors.length - 1; s >= 0; s -= 1) {
+            if (_rotates[s]) {
+                settings[s] = (int) (state % _size);
+                state /= _size;
+            }
+        }
+    }
+
+    /** Return the number of positions of each rotor. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of characters, starting from SETTINGS, during
+     *  which only the rightmost rotor will move, or Long.MAX_VALUE if
+     *  nothing else will ever move. */
+    private long quietSteps(int[] settings) {
+        int last = _rotors.length - 1;
+        if (!_rotates[last]) {
+            return 0;
+        }
+        for (int s = 1; s < last; s += 1) {
+            if (_rotates[s - 1] && _rotors[s].notchAt(settings[s])) {
+                return 0;
+            }
+        }
+        if (!_rotates[last - 1]) {
+            return Long.MAX_VALUE;
+        }
+        int d = _rotors[last].toNotch(settings[last]);
+        return d < 0 ? Long.MAX_VALUE : d;
+    }
+
+    /** Advance SETTINGS by K characters, as for advance, where K exceeds
+     *  the number of slots, by counting notches.  This relies on _direct:
+     *  the notches of each rotor that can double step are at least three
+     *  settings apart, and those of the rightmost at least two.  Then,
+     *  after the first character, no rotor is ever driven by its right
+     *  neighbour while at one of its own notches, and no rotor is at a
+     *  notch for two characters running.  So a rotor that is driven D
+     *  times passes its settings in order: it leaves each notch by
+     *  itself on the next character, and each other setting only when
+     *  driven, and it ends at the setting after the D'th setting without
+     *  a notch, or just beyond that if that is a notch and there was time
+     *  to leave it.  There was not iff the D'th drive came on the last
+     *  character, which depends on the neighbour's setting a character
+     *  earlier.  So the rotors are resolved from right to left, each at
+     *  the last few character counts, one fewer for each rotor to the
+     *  right.  */
+    private void jump(int[] settings, long k, MachineMetrics metrics) {
+        step(settings, metrics);
+        k -= 1;
+        int last = _rotors.length - 1, first = _firstMoving;
+        long[] moves = new long[last - first + 1];
+        long[] drives = new long[moves.length];
+        for (int d = 0; d < moves.length; d += 1) {
+            moves[d] = k - d;
+            drives[d] = first < last ? notchesIn(last, settings[last], k - d)
+                : 0;
+        }
+        for (int s = last - 1; s >= first; s -= 1) {
+            int right = settings[s + 1];
+            settings[s + 1] = (int) ((right + moves[0]) % _size);
+            if (metrics != null && s + 1 < last) {
+                metrics.advanced(s + 1, moves[0]);
+                metrics.doubleStepped(drives[0]);
+            }
+            for (int d = 0; d <= s - first; d += 1) {
+                if (s == first) {
+                    moves[d] = drives[d];
+                    continue;
+                }
+                boolean late = _rotors[s + 1].notchAt(
+                        (int) ((right + moves[d + 1]) % _size));
+                long m = clearOffset(s, settings[s], drives[d]) + 1;
+                if (!late && _rotors[s].notchAt(
+                        (int) ((settings[s] + m) % _size))) {
+                    m += 1;
+                }
+                moves[d] = m;
+                drives[d] = notchesIn(s, settings[s], m);
+            }
+        }
+        if (metrics != null && first < last) {
+            metrics.advanced(first, moves[0]);
+        }
+        settings[first] = (int) ((settings[first] + moves[0]) % _size);
+    }
+
+    /** Return the number of notches of the rotor in slot S among the LEN
+     *  settings starting from POSN, wrapping around. */
+    private long notchesIn(int s, int posn, long len) {
+        Rotor rotor = _rotors[s];
+        int end = posn + (int) (len % _size);
+        long count = len / _size * rotor.notchesBefore(_size)
+            - rotor.notchesBefore(posn);
+        if (end <= _size) {
+            return count + rotor.notchesBefore(end);
+        }
+        return count + rotor.notchesBefore(_size)
+            + rotor.notchesBefore(end - _size);
+    }
+
+    /** Return the offset from POSN of the D'th setting of the rotor in
+     *  slot S, counting from POSN itself and wrapping around, at which it
+     *  has no notch, or -1 if D is 0. */
+    private long clearOffset(int s, int posn, long d) {
+        if (d == 0) {
+            return -1;
+        }
+        long clear = _size - _rotors[s].notchesBefore(_size);
+        long turns = (d - 1) / clear;
+        long rest = d - turns * clear;
+        int lo = 1, hi = _size;
+        while (lo < hi) {
+            int mid = (lo + hi) / 2;
+            if (mid - notchesIn(s, posn, mid) >= rest) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return turns * _size + lo - 1;
+    }
+
+    /** Return the least number of advances that take the rotor in slot S
+     *  from one of its notches to the next, or Integer.MAX_VALUE if it
+     *  has none. */
+    private int notchGap(int s) {
+        int gap = Integer.MAX_VALUE;
+        for (int posn = 0; posn < _size; posn += 1) {
+            if (_rotors[s].notchAt(posn)) {
+                gap = Math.min(gap, 1 + _rotors[s].toNotch(next(posn)));
+            }
+        }
+        return gap;
+    }
+
+    /** Return the setting after POSN. */
+    private int next(int posn) {
+        return posn + 1 == _size ? 0 : posn + 1;
+    }
+
+    /** The rotors in each slot. */
+    private final Rotor[] _rotors;
+
+    /** Whether the rotor in each slot rotates. */
+    private final boolean[] _rotates;
+
+    /** Size of the rotors' alphabet. */
+    private final int _size;
+
+    /** The leftmost rotating slot. */
+    private final int _firstMoving;
+
+    /** True iff advance may use jump: the slots from _firstMoving on all
+     *  rotate, and their notches are far enough apart. */
+    private final boolean _direct;
+}
@@ -0,0 +1,63 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Stepper class.
+ *  @author Michaela Warady
+ */
+public class StepperTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    @Test
+    public void testStepperAdvance() {
+        Random random = new Random(61);
+        Alphabet ah = new CharacterRange('A', 'H');
+        for (int trial = 0; trial < 150; trial += 1) {
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            rotors.add(new Reflector("R",
+                    new Permutation("(AB) (CD) (EF) (GH)", ah)));
+            rotors.add(new FixedRotor("F", new Permutation("", ah)));
+            int pawls = 1 + random.nextInt(4);
+            for (int s = 0; s < pawls; s += 1) {
+                StringBuilder notches = new StringBuilder();
+                for (char c = 'A'; c <= 'H'; c += 1) {
+                    if (random.nextInt(4) == 0) {
+                        notches.append(c);
+                    }
+                }
+                rotors.add(new MovingRotor("M" + s,
+                        new Permutation("", ah), notches.toString()));
+            }
+            Stepper stepper = new Stepper(rotors);
+            int[] start = new int[rotors.size()];
+            for (int s = 1; s < start.length; s += 1) {
+                start[s] = random.nextInt(8);
+            }
+            int[] stepped = start.clone();
+            for (int k = 0; k < 300; k += 1) {
+                int[] advanced = start.clone();
+                stepper.advance(advanced, k);
+                assertArrayEquals("trial " + trial + " at " + k,
+                        stepped, advanced);
+                stepper.step(stepped);
+            }
+            long far = 1000 + random.nextInt(100000);
+            int[] whole = start.clone();
+            stepper.advance(whole, far);
+            int[] split = start.clone();
+            stepper.advance(split, far / 3);
+            stepper.advance(split, far - far / 3);
+            assertArrayEquals("trial " + trial, whole, split);
+        }
+    }
+}
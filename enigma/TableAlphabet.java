@@ -0,0 +1,143 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** An Alphabet consisting of any set of Unicode characters in a chosen
+ *  order, such as the digits followed by the letters, a range with gaps,
+ *  or the letters of a script outside the Basic Multilingual Plane.
+ *  Lookups in both directions are single array accesses: the code points
+ *  are held in order, and indices in a dense reverse table spanning the
+ *  smallest to the largest of them, which is small for an alphabet drawn
+ *  from one script.  Message characters are folded to upper case through
+ *  a CaseFoldTable.
+ *  @author Michaela Warady
+ */
+class TableAlphabet extends Alphabet {
+
+    /** An alphabet consisting of the characters of CHARS, each converted
+     *  to upper case by Character.toUpperCase, in order.  Each must
+     *  appear only once. */
+    TableAlphabet(String chars) {
+        _codePoints = chars.codePoints().map(Character::toUpperCase)
+            .toArray();
+        if (_codePoints.length == 0) {
+            throw error("empty alphabet");
+        }
+        if (_codePoints.length > CaseFoldTable.MAX_SIZE) {
+            throw error("alphabet too large");
+        }
+        int lo = Integer.MAX_VALUE, hi = -1;
+        for (int c : _codePoints) {
+            lo = Math.min(lo, c);
+            hi = Math.max(hi, c);
+        }
+        _base = lo;
+        _index = new short[hi - lo + 1];
+        Arrays.fill(_index, (short) -1);
+        for (int x = 0; x < _codePoints.length; x += 1) {
+            int k = _codePoints[x] - _base;
+            if (_index[k] >= 0) {
+                throw error("character %s appears twice in alphabet",
+                        Character.toString(_codePoints[x]));
+            }
+            _index[k] = (short) x;
+        }
+        _maxCharCount = Character.charCount(hi);
+        _fold = new CaseFoldTable(_codePoints);
+    }
+
+    /** Return my characters, in order. */
+    String chars() {
+        return new String(_codePoints, 0, _codePoints.length);
+    }
+
+    @Override
+    int size() {
+        return _codePoints.length;
+    }
+
+    @Override
+    boolean contains(char ch) {
+        return indexOfCodePoint(ch) >= 0;
+    }
+
+    @Override
+    char toChar(int index) {
+        if (index < 0 || index >= _codePoints.length) {
+            throw error("character index out of range");
+        }
+        if (_codePoints[index] > Character.MAX_VALUE) {
+            throw error("character %s is not a single char",
+                    Character.toString(_codePoints[index]));
+        }
+        return (char) _codePoints[index];
+    }
+
+    @Override
+    int toInt(char ch) {
+        int index = indexOfCodePoint(ch);
+        if (index < 0) {
+            throw error("character out of range");
+        }
+        return index;
+    }
+
+    @Override
+    int indexOf(char ch) {
+        return indexOfCodePoint(ch);
+    }
+
+    @Override
+    char charAt(int index) {
+        return (char) _codePoints[index];
+    }
+
+    @Override
+    int indexOfCodePoint(int codePoint) {
+        int k = codePoint - _base;
+        return k >= 0 && k < _index.length ? _index[k] : -1;
+    }
+
+    @Override
+    int foldedIndexOf(int codePoint) {
+        return _fold.get(codePoint);
+    }
+
+    @Override
+    int codePointAt(int index) {
+        return _codePoints[index];
+    }
+
+    @Override
+    int maxCharCount() {
+        return _maxCharCount;
+    }
+
+    @Override
+    int putChar(int index, char[] out, int k) {
+        int c = _codePoints[index];
+        if (c <= Character.MAX_VALUE) {
+            out[k] = (char) c;
+            return k + 1;
+        }
+        return k + Character.toChars(c, out, k);
+    }
+
+    /** My characters' code points, in order. */
+    private final int[] _codePoints;
+
+    /** The smallest of my code points. */
+    private final int _base;
+
+    /** _index[c - _base] is the index of code point c, or -1 if c is not
+     *  in this alphabet. */
+    private final short[] _index;
+
+    /** Index of each message character, folded to upper case. */
+    private final CaseFoldTable _fold;
+
+    /** Value of maxCharCount(). */
+    private final int _maxCharCount;
+}
@@ -1,6 +1,9 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /** Utility definitions for use in unit tests.
  *  @author P. N. Hilfinger
@@ -39,6 +42,58 @@ class TestUtils {
                   + "(PW) (QZ) (SX) (UY)");
     }
 
+    /** Return the naval rotors named NAMES, each as the kind of rotor it
+     *  is in the naval machine, with its wiring from NAVALA and its
+     *  notches. */
+    static ArrayList<Rotor> navalRotors(String... names) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (String name : names) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            switch (name) {
+            case "B": case "C":
+                rotors.add(new Reflector(name, perm));
+                break;
+            case "Beta": case "Gamma":
+                rotors.add(new FixedRotor(name, perm));
+                break;
+            default:
+                rotors.add(new MovingRotor(name, perm,
+                        NAVAL_NOTCHES.get(name)));
+                break;
+            }
+        }
+        return rotors;
+    }
+
+    /** The notches of each moving naval rotor. */
+    static final Map<String, String> NAVAL_NOTCHES =
+        Map.of("I", "Q", "II", "E", "III", "V", "IV", "J", "V", "Z",
+               "VI", "ZM", "VII", "ZM", "VIII", "ZM");
+
+    /** The 40 capital letters of the Deseret alphabet, which lie outside
+     *  the Basic Multilingual Plane. */
+    static final String DESERET_STRING =
+        new String(IntStream.range(0x10400, 0x10428).toArray(), 0, 40);
+
+    /** An alphabet of DESERET_STRING. */
+    static final Alphabet DESERET = new TableAlphabet(DESERET_STRING);
+
+    /** Return a reflector R and a moving rotor M over DESERET, the latter
+     *  with one notch. */
+    static ArrayList<Rotor> deseretRotors() {
+        int[] reflect = new int[40];
+        int[] rotate = new int[40];
+        for (int x = 0; x < 40; x += 1) {
+            reflect[x] = (x + 20) % 40;
+            rotate[x] = (x * 7 + 3) % 40;
+        }
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(reflect, DESERET)));
+        rotors.add(new MovingRotor("M", new Permutation(rotate, DESERET),
+                new String(Character.toChars(0x10410))));
+        return rotors;
+    }
+
     /** The mapping of the upper-case alphabet by NAVALA. */
     static final HashMap<String, String> NAVALA_MAP = new HashMap<>();
     static {
@@ -11,7 +11,12 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         textui.runClasses(PermutationTest.class,
-                MovingRotorTest.class, MachineTest.class);
+                MovingRotorTest.class, MachineTest.class,
+                StepperTest.class, RotorCycleTest.class,
+                MachineTemplateTest.class, KeystreamCacheTest.class,
+                MachineMetricsTest.class, CompiledConfigTest.class,
+                SettingsSearchTest.class, PlugboardSearchTest.class,
+                BombeTest.class, ServerTest.class);
     }
 
 }
@@ -0,0 +1,56 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/** Table chains applied to blocks of character indices with the JDK
+ *  Vector API (jdk.incubator.vector), converting as many characters per
+ *  instruction as the hardware's preferred vector holds.  Only
+ *  Machine.convertVector uses this class, so the incubator module is
+ *  needed at run time only by programs that call it.
+ *  @author Michaela Warady
+ */
+final class VectorConverter {
+
+    /** Not instantiable. */
+    private VectorConverter() {
+    }
+
+    /** Return the number of characters converted per vector. */
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    /** Replace each of the first LEN indices D[i] by passing it through
+     *  TABLES in order: at table t, D[i] becomes
+     *  TABLES[t][ROWS[t][i] + D[i]], or TABLES[t][D[i]] if ROWS[t] is
+     *  null.  Full vectors of indices are looked up with gathers; the
+     *  remaining LEN % lanes() use the same chain one at a time. */
+    static void convert(int[] d, int len, int[][] tables, int[][] rows) {
+        int lanes = SPECIES.length();
+        int[] index = new int[lanes];
+        int i;
+        for (i = 0; i + lanes <= len; i += lanes) {
+            IntVector v = IntVector.fromArray(SPECIES, d, i);
+            for (int t = 0; t < tables.length; t += 1) {
+                if (rows[t] != null) {
+                    v = v.add(IntVector.fromArray(SPECIES, rows[t], i));
+                }
+                v.intoArray(index, 0);
+                v = IntVector.fromArray(SPECIES, tables[t], 0, index, 0);
+            }
+            v.intoArray(d, i);
+        }
+        for (; i < len; i += 1) {
+            int x = d[i];
+            for (int t = 0; t < tables.length; t += 1) {
+                x = tables[t][rows[t] == null ? x : rows[t][i] + x];
+            }
+            d[i] = x;
+        }
+    }
+
+    /** Vector shape used for conversion. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+}